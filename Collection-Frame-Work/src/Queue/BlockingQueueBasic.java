@@ -15,6 +15,7 @@ package Queue;
 // low memory overhead
 // uses a single lock for both enqueue and dequeue operations
 // more threads --> problem
+// drainTo(collection, max) --> up to max elements per lock acquisition instead of one per take
 
 
 import java.util.Comparator;
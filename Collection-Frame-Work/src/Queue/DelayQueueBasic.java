@@ -38,6 +38,8 @@ public class DelayQueueBasic {
         // Elements can only be taken from the queue when their delay has expired
         // Useful for scheduling tasks to be executed after a certain delay
         // internally priority queue
+        // one lock for every put / take --> with many producers see StripedDelayQueue
+        // heap only --> a restart loses pending tasks, see PersistentDelayQueue
         BlockingQueue<DelayedTask> delayQueue = new DelayQueue<>();
         try {
             delayQueue.put(new DelayedTask("Task1", 5, TimeUnit.SECONDS));
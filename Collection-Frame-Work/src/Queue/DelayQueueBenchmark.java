@@ -0,0 +1,94 @@
+package Queue;
+
+// DelayQueue vs StripedDelayQueue with many producers and one consumer
+// PRODUCERS threads offer ITEMS_PER_PRODUCER items each, delays uniform in [0, MAX_DELAY_MILLIS)
+// the consumer batches on both sides: DelayQueue.drainTo (expired only) / drainExpired
+// reported: offer throughput (until the last producer finishes),
+// total time until everything is consumed, lateness (consumed - deadline) p50 / p99
+// java Queue.DelayQueueBenchmark [itemsPerProducer] [producers]
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+public class DelayQueueBenchmark {
+    private static final long MAX_DELAY_MILLIS = 50;
+
+    static final class TimedItem implements Delayed {
+        final long deadlineNanos;
+
+        TimedItem(long delayNanos) {
+            this.deadlineNanos = System.nanoTime() + delayNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(deadlineNanos, ((TimedItem) o).deadlineNanos);
+        }
+    }
+
+    private static void run(String name, int producers, int perProducer,
+                            Consumer<TimedItem> offer, ToIntFunction<List<TimedItem>> drain) throws InterruptedException {
+        int total = producers * perProducer;
+        long[] lateness = new long[total];
+        Thread consumer = new Thread(() -> {
+            List<TimedItem> batch = new ArrayList<>();
+            int seen = 0;
+            while (seen < total) {
+                batch.clear();
+                if (drain.applyAsInt(batch) == 0) {
+                    LockSupport.parkNanos(200_000);
+                    continue;
+                }
+                long now = System.nanoTime();
+                for (TimedItem item : batch) lateness[seen++] = now - item.deadlineNanos;
+            }
+        });
+        Thread[] threads = new Thread[producers];
+        long start = System.nanoTime();
+        consumer.start();
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long maxDelay = TimeUnit.MILLISECONDS.toNanos(MAX_DELAY_MILLIS);
+                for (int i = 0; i < perProducer; i++) offer.accept(new TimedItem(random.nextLong(maxDelay)));
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) thread.join();
+        long produced = System.nanoTime() - start;
+        consumer.join();
+        long consumed = System.nanoTime() - start;
+
+        Arrays.sort(lateness);
+        System.out.printf("%-18s %,14.0f offers/s  all consumed in %6.0f ms  lateness p50 %6.2f ms  p99 %6.2f ms  min %6.2f ms%n",
+                name, total * 1e9 / produced, consumed / 1e6, lateness[total / 2] / 1e6,
+                lateness[(int) (total * 0.99)] / 1e6, lateness[0] / 1e6);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int perProducer = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int producers = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        System.out.println(producers + " producers x " + perProducer + " items, delays 0-" + MAX_DELAY_MILLIS
+                + " ms, " + Runtime.getRuntime().availableProcessors() + " cores");
+
+        for (int round = 0; round < 3; round++) { // first round is warm-up
+            DelayQueue<TimedItem> delayQueue = new DelayQueue<>();
+            run("DelayQueue", producers, perProducer, delayQueue::put, delayQueue::drainTo);
+            StripedDelayQueue<TimedItem> striped = new StripedDelayQueue<>(producers);
+            run("StripedDelayQueue", producers, perProducer, striped::offer, striped::drainExpired);
+        }
+    }
+}
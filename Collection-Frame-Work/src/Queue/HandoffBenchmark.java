@@ -0,0 +1,88 @@
+package Queue;
+
+//Hand-off latency: HandoffExecutor vs ThreadPoolExecutor
+//---------------------------------------------------------------------------
+//One submitter sends requests at a fixed rate (open loop, parkNanos between sends);
+//each request records (started running - submitted) and then does WORK_NANOS of work.
+//p50 / p99 of that hand-off latency per executor and load, plus the rate reached.
+//Requests run by the submitter itself (CallerRunsPolicy) count with ~0 latency; flat out,
+//the LBQ pool just queues everything, so its "rate" is enqueue speed, not work done.
+//
+//TPE fixed + LBQ      : Executors.newFixedThreadPool(4) shape
+//TPE SynchronousQueue : 0..4 workers, SynchronousQueue, CallerRunsPolicy
+//handoff spin 0       : HandoffExecutor(2..4), parks as soon as it is idle
+//handoff spin 50us    : HandoffExecutor(2..4), spins 50 us before parking
+//
+//java Queue.HandoffBenchmark [millisPerCell]
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+public class HandoffBenchmark {
+    private static final long WORK_NANOS = 5_000;
+    private static final int MAX_SAMPLES = 1_000_000;
+
+    private static void work() {
+        long end = System.nanoTime() + WORK_NANOS;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void cell(String name, Supplier<ExecutorService> factory, long intervalNanos, long millis)
+            throws InterruptedException {
+        ExecutorService executor = factory.get();
+        long[] latencies = new long[MAX_SAMPLES];
+        AtomicInteger samples = new AtomicInteger();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(millis);
+        long sent = 0;
+        for (long next = start; next < end && sent < MAX_SAMPLES; next += intervalNanos) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            long submitted = System.nanoTime();
+            executor.execute(() -> {
+                long latency = System.nanoTime() - submitted;
+                int i = samples.getAndIncrement();
+                if (i < latencies.length) latencies[i] = latency;
+                work();
+            });
+            sent++;
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        int n = Math.min(samples.get(), latencies.length);
+        Arrays.sort(latencies, 0, n);
+        System.out.printf("  %-22s %,10.0f req/s  p50 %8.1f us  p99 %9.1f us%n", name, sent * 1e9 / elapsed,
+                latencies[n / 2] / 1e3, latencies[(int) (n * 0.99)] / 1e3);
+    }
+
+    private static void load(long intervalNanos, long millis) throws InterruptedException {
+        System.out.println(intervalNanos == 0 ? "flat out (submitter never waits)"
+                : "one request every " + intervalNanos / 1000 + " us");
+        cell("TPE fixed + LBQ", () -> new ThreadPoolExecutor(4, 4, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>()), intervalNanos, millis);
+        cell("TPE SynchronousQueue", () -> new ThreadPoolExecutor(0, 4, 1, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new ThreadPoolExecutor.CallerRunsPolicy()), intervalNanos, millis);
+        cell("handoff spin 0", () -> new HandoffExecutor(2, 4, 1000, 0, TimeUnit.MILLISECONDS),
+                intervalNanos, millis);
+        cell("handoff spin 50us", () -> new HandoffExecutor(2, 4, 1_000_000, 50, TimeUnit.MICROSECONDS),
+                intervalNanos, millis);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 1_000;
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors() + ", work per request "
+                + WORK_NANOS / 1000 + " us, " + millis + " ms per cell");
+        load(100_000, millis / 2); // warm-up
+        for (long interval : new long[]{1_000_000, 200_000, 50_000, 0}) load(interval, millis);
+    }
+}
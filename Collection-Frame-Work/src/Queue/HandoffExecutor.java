@@ -0,0 +1,276 @@
+package Queue;
+
+//Direct hand-off executor (the SynchronousQueue idea without the queue)
+//---------------------------------------------------------------------------
+//A fixed ThreadPoolExecutor over a LinkedBlockingQueue pays for every task twice:
+//offer() links a node and signals a Condition, the worker's take() wakes up, locks and
+//unlinks it. HandoffExecutor keeps its idle workers on a LIFO stack instead:
+//
+//execute(task)
+//  1. pop an idle worker, claim it (CAS IDLE -> BUSY), write the task into its slot
+//     and unpark it only if it already went to sleep
+//  2. no idle worker and fewer than maxWorkers -> start a new worker with the task
+//  3. saturated -> Saturation.CALLER_RUNS (default, pushes back on the submitter instead
+//     of building a queue) or Saturation.ABORT (RejectedExecutionException)
+//
+//an idle worker spins on its slot for spinNanos (Thread.onSpinWait) before parking,
+//so a busy request path never pays the park/unpark round trip; LIFO keeps the most
+//recently used (still spinning, cache-warm) worker on top.
+//Workers above coreWorkers retire after keepAlive without work.
+//As in ThreadPoolExecutor, a task's interrupt does not leak into the next task or the idle
+//wait: only shutdownNow() leaves workers interrupted.
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class HandoffExecutor extends AbstractExecutorService {
+    private static final int BUSY = 0, IDLE = 1, RETIRED = 2;
+
+    public enum Saturation { CALLER_RUNS, ABORT }
+
+    private final int coreWorkers;
+    private final int maxWorkers;
+    private final long keepAliveNanos;
+    private final long spinNanos;
+    private final Saturation saturation;
+
+    private final ConcurrentLinkedDeque<Worker> idle = new ConcurrentLinkedDeque<>();
+    private final Set<Worker> workers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger workerCount = new AtomicInteger();
+    private final AtomicInteger threadIds = new AtomicInteger();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean shutdown;
+    private volatile boolean stopping; // shutdownNow()
+
+    public HandoffExecutor(int coreWorkers, int maxWorkers, long keepAlive, long spin, TimeUnit unit) {
+        this(coreWorkers, maxWorkers, keepAlive, spin, unit, Saturation.CALLER_RUNS);
+    }
+
+    public HandoffExecutor(int coreWorkers, int maxWorkers, long keepAlive, long spin, TimeUnit unit,
+                           Saturation saturation) {
+        if (coreWorkers < 0 || maxWorkers < 1 || coreWorkers > maxWorkers) {
+            throw new IllegalArgumentException("need 0 <= coreWorkers <= maxWorkers, maxWorkers >= 1");
+        }
+        this.coreWorkers = coreWorkers;
+        this.maxWorkers = maxWorkers;
+        this.keepAliveNanos = unit.toNanos(keepAlive);
+        this.spinNanos = unit.toNanos(spin);
+        this.saturation = saturation;
+    }
+
+    private final class Worker implements Runnable {
+        final AtomicInteger state = new AtomicInteger(BUSY);
+        volatile Runnable slot;
+        volatile boolean parked;
+        Thread thread;
+        Runnable first;
+        boolean uncounted; // already taken off workerCount when it retired on keep-alive
+
+        Worker(Runnable first) {
+            this.first = first;
+        }
+
+        void hand(Runnable task) {
+            slot = task;
+            if (parked) LockSupport.unpark(thread); // parked is written before the worker re-checks slot
+        }
+
+        @Override
+        public void run() {
+            try {
+                Runnable task = first;
+                first = null;
+                while (task != null) {
+                    if (stopping) thread.interrupt();
+                    else Thread.interrupted(); // whatever the last task left behind
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(thread, t);
+                    }
+                    task = awaitTask();
+                }
+            } finally {
+                workers.remove(this);
+                int left = uncounted ? workerCount.get() : workerCount.decrementAndGet();
+                if (left == 0 && shutdown) terminated.countDown();
+            }
+        }
+
+        // null = this worker retires
+        private Runnable awaitTask() {
+            slot = null;
+            state.set(IDLE);
+            idle.push(this);
+            if (shutdown && retire()) return null;
+
+            long spinUntil = System.nanoTime() + spinNanos;
+            while (System.nanoTime() - spinUntil < 0) {
+                Runnable task = slot;
+                if (task != null) return takeSlot(task);
+                Thread.onSpinWait();
+            }
+            long deadline = System.nanoTime() + keepAliveNanos;
+            while (true) {
+                parked = true;
+                Runnable task = slot;
+                if (task == null) {
+                    if (!stopping) Thread.interrupted(); // a set flag would make parkNanos return at once
+                    LockSupport.parkNanos(this, deadline - System.nanoTime());
+                    task = slot;
+                }
+                parked = false;
+                if (task != null) return takeSlot(task);
+                if (state.get() == BUSY) continue; // claimed, the task is on its way
+                if (shutdown || System.nanoTime() - deadline >= 0) {
+                    if (retireIfAboveCore()) return null;
+                    deadline = System.nanoTime() + keepAliveNanos;
+                }
+            }
+        }
+
+        private Runnable takeSlot(Runnable task) {
+            slot = null;
+            return task;
+        }
+
+        private boolean retire() {
+            if (!state.compareAndSet(IDLE, RETIRED)) return false;
+            idle.remove(this);
+            return true;
+        }
+
+        private boolean retireIfAboveCore() {
+            if (shutdown) return retire();
+            // give up the slot in workerCount first, so two workers can't both retire below core
+            for (int count; (count = workerCount.get()) > coreWorkers; ) {
+                if (!workerCount.compareAndSet(count, count - 1)) continue;
+                if (retire()) {
+                    uncounted = true;
+                    return true;
+                }
+                workerCount.incrementAndGet(); // claimed meanwhile, stay
+                return false;
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) throw new NullPointerException();
+        if (shutdown) throw new RejectedExecutionException("executor is shut down");
+        for (Worker worker; (worker = idle.poll()) != null; ) {
+            if (worker.state.compareAndSet(IDLE, BUSY)) {
+                worker.hand(task);
+                return;
+            }
+        }
+        for (int count; (count = workerCount.get()) < maxWorkers; ) {
+            if (workerCount.compareAndSet(count, count + 1)) {
+                if (shutdown) {
+                    if (workerCount.decrementAndGet() == 0) terminated.countDown();
+                    throw new RejectedExecutionException("executor is shut down");
+                }
+                startWorker(task);
+                return;
+            }
+        }
+        if (saturation == Saturation.ABORT) {
+            throw new RejectedExecutionException("all " + maxWorkers + " workers are busy");
+        }
+        task.run();
+    }
+
+    private void startWorker(Runnable first) {
+        Worker worker = new Worker(first);
+        worker.thread = new Thread(worker, "handoff-" + threadIds.incrementAndGet());
+        workers.add(worker);
+        worker.thread.start();
+    }
+
+    public int workerCount() {
+        return workerCount.get();
+    }
+
+    public int idleCount() {
+        return idle.size();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        for (Worker worker : workers) LockSupport.unpark(worker.thread); // idle workers retire
+        if (workerCount.get() == 0) terminated.countDown();
+    }
+
+    // no queue, so there is never a list of tasks that did not start
+    @Override
+    public List<Runnable> shutdownNow() {
+        stopping = true;
+        shutdown();
+        for (Worker worker : workers) worker.thread.interrupt();
+        return new ArrayList<>();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        HandoffExecutor executor = new HandoffExecutor(1, 4, 200, 0, TimeUnit.MILLISECONDS);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int i = 0; i < 8; i++) {
+            int request = i;
+            // 4 workers busy -> requests 4..7 run on main (CALLER_RUNS)
+            executor.execute(() -> {
+                System.out.println(Thread.currentThread().getName() + " handles request-" + request);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+        System.out.println("workers after burst: " + executor.workerCount() + ", idle: " + executor.idleCount());
+        Thread.sleep(500);
+        System.out.println("workers after keep-alive: " + executor.workerCount() + " (core stays)");
+        executor.execute(() -> Thread.currentThread().interrupt()); // a task that leaves its flag set
+        Thread.sleep(50);
+        CountDownLatch checked = new CountDownLatch(1);
+        executor.execute(() -> {
+            System.out.println("next task sees an interrupt: " + Thread.currentThread().isInterrupted());
+            checked.countDown();
+        });
+        checked.await();
+        executor.shutdown();
+        System.out.println("terminated: " + executor.awaitTermination(1, TimeUnit.SECONDS));
+        try {
+            executor.execute(() -> {});
+        } catch (RejectedExecutionException e) {
+            System.out.println("after shutdown: " + e.getMessage());
+        }
+    }
+}
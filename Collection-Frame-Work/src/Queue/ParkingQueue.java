@@ -0,0 +1,125 @@
+package Queue;
+
+//Lock-free MPMC queue whose consumers park instead of polling
+//---------------------------------------------------------------------------
+//items   : ConcurrentLinkedQueue (Michael-Scott, lock-free for any number of producers
+//          and consumers)
+//waiters : a second ConcurrentLinkedQueue of parked consumers, plus a counter so that
+//          offer() costs one volatile read when nobody is waiting
+//
+//take()
+//  1. poll, then poll up to `spins` more times with Thread.onSpinWait
+//  2. register as a waiter, poll once more (an item offered before the registration
+//     is seen here; one offered after it sees the waiter), park until signalled
+//offer(e)
+//  add the item; if someone is waiting, unpark exactly one waiter
+//
+//A waiter that finds an item on its own after it was already signalled passes the
+//signal on, so no wake-up is lost. close() wakes everybody; take() returns null once
+//the queue is closed and empty (no poison pills needed).
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class ParkingQueue<E> {
+    private static final int WAITING = 0, SIGNALLED = 1, CANCELLED = 2;
+
+    private static final class Waiter {
+        final Thread thread = Thread.currentThread();
+        final AtomicInteger state = new AtomicInteger(WAITING);
+    }
+
+    private final ConcurrentLinkedQueue<E> items = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final int spins;
+    private volatile boolean closed;
+
+    public ParkingQueue() {
+        this(100);
+    }
+
+    public ParkingQueue(int spins) {
+        this.spins = spins;
+    }
+
+    public void offer(E item) {
+        if (closed) throw new IllegalStateException("queue is closed");
+        items.offer(item);
+        if (waiting.get() > 0) signalOne();
+    }
+
+    public E poll() {
+        return items.poll();
+    }
+
+    /** Waits for an item; null once the queue is closed and drained. */
+    public E take() throws InterruptedException {
+        return poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /** Waits up to the timeout; null on timeout or once the queue is closed and drained. */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E item = items.poll();
+        for (int i = 0; item == null && i < spins; i++) {
+            Thread.onSpinWait();
+            item = items.poll();
+        }
+        if (item != null) return item;
+
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+        while (true) {
+            if (closed) return items.poll();
+            Waiter waiter = new Waiter();
+            waiters.offer(waiter);
+            waiting.incrementAndGet();
+            boolean interrupted = false;
+            item = items.poll(); // re-check after registering
+            while (item == null && waiter.state.get() == WAITING && !closed && remaining > 0) {
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                    break;
+                }
+                remaining = deadline - System.nanoTime();
+                item = items.poll();
+            }
+            waiting.decrementAndGet();
+            boolean signalled = !waiter.state.compareAndSet(WAITING, CANCELLED);
+            if (!signalled) waiters.remove(waiter);
+            if (item == null && !interrupted) item = items.poll();
+
+            boolean leaving = item != null || interrupted || closed || remaining <= 0;
+            // woken for an item we won't take, or more items behind ours: pass the wake-up on
+            if (signalled && leaving && (item == null || !items.isEmpty())) signalOne();
+            if (interrupted) throw new InterruptedException();
+            if (leaving) return item;
+        }
+    }
+
+    private void signalOne() {
+        for (Waiter waiter; (waiter = waiters.poll()) != null; ) {
+            if (waiter.state.compareAndSet(WAITING, SIGNALLED)) {
+                LockSupport.unpark(waiter.thread);
+                return;
+            }
+        }
+    }
+
+    /** No more offers; waiting consumers drain what is left and then get null. */
+    public void close() {
+        closed = true;
+        for (Waiter waiter; (waiter = waiters.poll()) != null; ) LockSupport.unpark(waiter.thread);
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    public int waitingConsumers() {
+        return waiting.get();
+    }
+}
@@ -0,0 +1,619 @@
+package Queue;
+
+// DelayQueue / ScheduledExecutor keep everything on the heap --> a restart loses every pending task
+// PersistentDelayQueue = DelayQueue semantics + an append-only journal on disk
+
+// journal layout
+// one directory, one "segment" per due-time window (WINDOW = 1 min by default)
+// a segment is 1..n memory-mapped part files  <windowStart>-<part>.seg
+// record = [int length][int crc32][byte type][long id][long dueMillis][payload utf-8]
+//          length is written last, so a record torn by a crash fails length / crc and is ignored
+// types  : ADD, FIRED (taken by a consumer), CANCELLED (remove(o))
+// a task's ADD and its tombstone always go to the same segment (the one of its due time)
+
+// memory
+// only windows starting before now + LOAD_AHEAD are read into the in-memory heap
+// later windows are appended to but stay on disk until their time comes (startup included)
+
+// compaction
+// every task of a window fired / cancelled --> its files are deleted
+// more dead than live records (and at least COMPACT_MIN_DEAD) --> live ADDs rewritten into a new part
+//   (written as .tmp, forced, atomically renamed, then the old parts are deleted;
+//    a crash in between leaves duplicates that replay drops by id)
+
+// durability
+// mapped writes survive a process crash (the page cache belongs to the OS)
+// surviving power loss needs fsync=true (force() after every record) or a periodic sync()
+
+// limits
+// wall clock (currentTimeMillis) is used for due times, it has to survive a restart
+// only DurableTask elements can be stored
+// take() writes FIRED before returning: a crash after take() and before the task is handled loses it
+// size() / iterator() only see windows that are loaded
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+final class DurableTask implements Delayed {
+    final long id;
+    final long dueMillis;
+    final String payload;
+
+    DurableTask(String payload, long delay, TimeUnit unit) {
+        this(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE) + 1,
+                System.currentTimeMillis() + unit.toMillis(delay), payload);
+    }
+
+    DurableTask(long id, long dueMillis, String payload) {
+        this.id = id;
+        this.dueMillis = dueMillis;
+        this.payload = payload;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(dueMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+        return Long.compare(dueMillis, ((DurableTask) o).dueMillis);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof DurableTask && ((DurableTask) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return payload + " (due " + new Date(dueMillis) + ")";
+    }
+}
+
+public class PersistentDelayQueue extends AbstractQueue<Delayed> implements BlockingQueue<Delayed>, Closeable {
+    private static final byte ADD = 1, FIRED = 2, CANCELLED = 3;
+    private static final int HEADER = 8;                    // length + crc
+    private static final int BODY_FIXED = 1 + 8 + 8;        // type + id + dueMillis
+    private static final int PART_BYTES = 4 * 1024 * 1024;
+    private static final int COMPACT_MIN_DEAD = 1024;
+
+    private final Path dir;
+    private final long windowMillis;
+    private final long loadAheadMillis;
+    private final boolean fsync;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final PriorityQueue<DurableTask> heap = new PriorityQueue<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final TreeMap<Long, Segment> unloaded = new TreeMap<>();
+
+    // One due-time window; guarded by lock
+    private final class Segment {
+        final long window;
+        final TreeMap<Integer, Path> parts = new TreeMap<>();
+        final Map<Long, DurableTask> live = new HashMap<>(); // only meaningful once loaded
+        boolean loaded;
+        int dead;
+        MappedByteBuffer tail; // last part, positioned at its end; opened on first append
+
+        Segment(long window) {
+            this.window = window;
+        }
+
+        void append(byte type, DurableTask task) throws IOException {
+            byte[] payload = type == ADD ? task.payload.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            int length = BODY_FIXED + payload.length;
+            if (HEADER + length > PART_BYTES) throw new IllegalArgumentException("payload too large");
+            if (tail == null) openTail();
+            if (tail.remaining() < HEADER + length) {
+                tail.force();
+                tail = map(partPath(window, parts.isEmpty() ? 0 : parts.lastKey() + 1), true);
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            body.put(type).putLong(task.id).putLong(task.dueMillis).put(payload);
+            CRC32 crc = new CRC32();
+            crc.update(body.array());
+            int at = tail.position();
+            tail.position(at + HEADER);
+            tail.put(body.array());
+            tail.putInt(at + 4, (int) crc.getValue());
+            tail.putInt(at, length); // commit
+            if (fsync) tail.force();
+        }
+
+        // Positions a buffer on the end of the last part, replaying nothing
+        private void openTail() throws IOException {
+            if (parts.isEmpty()) {
+                tail = map(partPath(window, 0), true);
+            } else {
+                tail = map(parts.lastEntry().getValue(), false);
+                replay(tail, (type, task) -> {});
+            }
+        }
+
+        private MappedByteBuffer map(Path path, boolean create) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (create) parts.put(partNumber(path), path);
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, PART_BYTES);
+            }
+        }
+
+        // Reads every part, in order, into live; leaves tail at the end of the last part
+        void load() throws IOException {
+            for (Map.Entry<Integer, Path> part : parts.entrySet()) {
+                MappedByteBuffer buffer = map(part.getValue(), false);
+                replay(buffer, (type, task) -> {
+                    if (type == ADD) {
+                        live.put(task.id, task);
+                    } else if (live.remove(task.id) != null) {
+                        dead++;
+                    }
+                });
+                if (part.getKey().equals(parts.lastKey())) tail = buffer;
+            }
+            loaded = true;
+        }
+
+        // For a window still on disk: was the task added and not fired / cancelled since?
+        boolean holdsLive(long id) throws IOException {
+            boolean[] live = {false};
+            for (Path part : parts.values()) {
+                replay(map(part, false), (type, task) -> {
+                    if (task.id == id) live[0] = type == ADD;
+                });
+            }
+            return live[0];
+        }
+
+        void delete() throws IOException {
+            tail = null;
+            for (Path part : parts.values()) Files.deleteIfExists(part);
+            parts.clear();
+        }
+
+        void compact() throws IOException {
+            int next = parts.lastKey() + 1;
+            Path target = partPath(window, next);
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (DurableTask task : live.values()) {
+                    byte[] payload = task.payload.getBytes(StandardCharsets.UTF_8);
+                    ByteBuffer body = ByteBuffer.allocate(BODY_FIXED + payload.length);
+                    body.put(ADD).putLong(task.id).putLong(task.dueMillis).put(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(body.array());
+                    ByteBuffer record = ByteBuffer.allocate(HEADER + body.capacity());
+                    record.putInt(body.capacity()).putInt((int) crc.getValue()).put(body.array()).flip();
+                    while (record.hasRemaining()) channel.write(record);
+                }
+                channel.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            tail = null;
+            for (Path old : parts.values()) Files.deleteIfExists(old);
+            parts.clear();
+            parts.put(next, target);
+            dead = 0;
+        }
+    }
+
+    private interface RecordVisitor {
+        void visit(byte type, DurableTask task);
+    }
+
+    // Stops at the first empty, truncated or corrupt record and leaves the buffer positioned there
+    private static void replay(ByteBuffer buffer, RecordVisitor visitor) {
+        CRC32 crc = new CRC32();
+        buffer.position(0);
+        while (buffer.remaining() >= HEADER) {
+            int at = buffer.position();
+            int length = buffer.getInt(at);
+            if (length < BODY_FIXED || length > buffer.remaining() - HEADER) break;
+            byte[] body = new byte[length];
+            buffer.get(at + HEADER, body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(at + 4)) break; // torn write
+            ByteBuffer in = ByteBuffer.wrap(body);
+            byte type = in.get();
+            long id = in.getLong();
+            long due = in.getLong();
+            String payload = new String(body, BODY_FIXED, length - BODY_FIXED, StandardCharsets.UTF_8);
+            visitor.visit(type, new DurableTask(id, due, payload));
+            buffer.position(at + HEADER + length);
+        }
+    }
+
+    PersistentDelayQueue(Path dir) throws IOException {
+        this(dir, TimeUnit.MINUTES.toMillis(1), TimeUnit.MINUTES.toMillis(5), false);
+    }
+
+    PersistentDelayQueue(Path dir, long windowMillis, long loadAheadMillis, boolean fsync) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.windowMillis = windowMillis;
+        this.loadAheadMillis = loadAheadMillis;
+        this.fsync = fsync;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(".seg.tmp")) {
+                    Files.delete(path); // unfinished compaction, the old parts are still there
+                } else if (name.endsWith(".seg")) {
+                    long window = Long.parseLong(name.substring(0, name.indexOf('-')));
+                    segments.computeIfAbsent(window, Segment::new).parts.put(partNumber(path), path);
+                }
+            }
+        }
+        segments.forEach(unloaded::put);
+        lock.lock();
+        try {
+            loadDueWindows();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Path partPath(long window, int part) {
+        return dir.resolve(window + "-" + part + ".seg");
+    }
+
+    private static int partNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring(name.indexOf('-') + 1, name.indexOf('.')));
+    }
+
+    private long windowOf(long dueMillis) {
+        return Math.floorDiv(dueMillis, windowMillis) * windowMillis;
+    }
+
+    // Caller holds lock
+    private void loadDueWindows() {
+        long horizon = System.currentTimeMillis() + loadAheadMillis;
+        while (!unloaded.isEmpty() && unloaded.firstKey() <= horizon) {
+            Segment segment = unloaded.pollFirstEntry().getValue();
+            try {
+                segment.load();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            heap.addAll(segment.live.values());
+            retireIfEmpty(segment);
+        }
+    }
+
+    private long millisUntilNextLoad() {
+        if (unloaded.isEmpty()) return Long.MAX_VALUE;
+        return Math.max(0, unloaded.firstKey() - loadAheadMillis - System.currentTimeMillis());
+    }
+
+    private void retireIfEmpty(Segment segment) {
+        try {
+            if (segment.live.isEmpty()) {
+                segment.delete();
+                segments.remove(segment.window);
+            } else if (segment.dead >= COMPACT_MIN_DEAD && segment.dead > segment.live.size()) {
+                segment.compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Caller holds lock; writes the tombstone, then drops the task from memory.
+    // A window still on disk only gets the tombstone: its live set is empty until load(),
+    // which replays the tombstone and retires / compacts the window then.
+    private DurableTask retire(DurableTask task, byte type) {
+        Segment segment = segments.get(windowOf(task.dueMillis));
+        if (segment == null) return task;
+        try {
+            segment.append(type, task);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!segment.loaded) return task;
+        if (segment.live.remove(task.id) != null) segment.dead++;
+        retireIfEmpty(segment);
+        return task;
+    }
+
+    private DurableTask pollExpired() {
+        DurableTask first = heap.peek();
+        if (first == null || first.getDelay(TimeUnit.MILLISECONDS) > 0) return null;
+        return retire(heap.poll(), FIRED);
+    }
+
+    // ---- BlockingQueue ----
+
+    @Override
+    public boolean offer(Delayed e) {
+        if (!(e instanceof DurableTask)) throw new IllegalArgumentException("only DurableTask can be persisted");
+        DurableTask task = (DurableTask) e;
+        lock.lock();
+        try {
+            long window = windowOf(task.dueMillis);
+            Segment segment = segments.get(window);
+            if (segment == null) {
+                segment = new Segment(window);
+                segments.put(window, segment);
+                if (window <= System.currentTimeMillis() + loadAheadMillis) {
+                    segment.loaded = true;
+                } else {
+                    unloaded.put(window, segment);
+                    available.signal(); // the waiting consumer may need to wake for this window's load
+                }
+            }
+            segment.append(ADD, task);
+            if (segment.loaded) {
+                segment.live.put(task.id, task);
+                heap.add(task);
+                if (heap.peek() == task) available.signal();
+            }
+            return true;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Delayed e) {
+        offer(e);
+    }
+
+    @Override
+    public boolean offer(Delayed e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    @Override
+    public Delayed poll() {
+        lock.lock();
+        try {
+            loadDueWindows();
+            return pollExpired();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Delayed take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                loadDueWindows();
+                DurableTask task = pollExpired();
+                if (task != null) return task;
+                long wait = waitMillis();
+                if (wait == Long.MAX_VALUE) available.await();
+                else available.await(wait, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Delayed poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                loadDueWindows();
+                DurableTask task = pollExpired();
+                if (task != null) return task;
+                long left = deadline - System.nanoTime();
+                if (left <= 0) return null;
+                long wait = Math.min(waitMillis(), TimeUnit.NANOSECONDS.toMillis(left) + 1);
+                available.await(wait, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Until the head is due or the next window has to be loaded
+    private long waitMillis() {
+        DurableTask first = heap.peek();
+        long wait = millisUntilNextLoad();
+        return first == null ? wait : Math.min(wait, Math.max(1, first.getDelay(TimeUnit.MILLISECONDS)));
+    }
+
+    @Override
+    public Delayed peek() {
+        lock.lock();
+        try {
+            return heap.peek();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Removes a pending task; works for tasks in windows that are still on disk as well. */
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof DurableTask)) return false;
+        DurableTask task = (DurableTask) o;
+        lock.lock();
+        try {
+            Segment segment = segments.get(windowOf(task.dueMillis));
+            if (segment == null) return false;
+            if (segment.loaded ? !heap.remove(task) : !segment.holdsLive(task.id)) return false;
+            retire(task, CANCELLED);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Delayed> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Delayed> c, int maxElements) {
+        lock.lock();
+        try {
+            loadDueWindows();
+            int n = 0;
+            DurableTask task;
+            while (n < maxElements && (task = pollExpired()) != null) {
+                c.add(task);
+                n++;
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /** Tasks in loaded windows; windows still on disk are not counted. */
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int unloadedWindows() {
+        lock.lock();
+        try {
+            return unloaded.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Snapshot of the tasks in loaded windows. */
+    @Override
+    public Iterator<Delayed> iterator() {
+        lock.lock();
+        try {
+            Iterator<DurableTask> snapshot = new ArrayList<>(heap).iterator();
+            return new Iterator<>() {
+                DurableTask last;
+
+                public boolean hasNext() {
+                    return snapshot.hasNext();
+                }
+
+                public Delayed next() {
+                    return last = snapshot.next();
+                }
+
+                public void remove() {
+                    PersistentDelayQueue.this.remove(last);
+                }
+            };
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Forces every open part to disk. */
+    void sync() {
+        lock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment.tail != null) segment.tail.force();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        sync();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("delay-journal");
+        // 1 s windows, load 2 s ahead, so the demo shows on-demand loading
+        PersistentDelayQueue queue = new PersistentDelayQueue(dir, 1000, 2000, false);
+        queue.put(new DurableTask("Task1", 1500, TimeUnit.MILLISECONDS));
+        queue.put(new DurableTask("Task2", 500, TimeUnit.MILLISECONDS));
+        DurableTask cancelled = new DurableTask("Task3", 800, TimeUnit.MILLISECONDS);
+        queue.put(cancelled);
+        queue.put(new DurableTask("Task4", 5, TimeUnit.SECONDS));
+        queue.remove(cancelled);
+        System.out.println("Journal before restart: " + listing(dir));
+        // no close(): simulate the process dying here
+
+        PersistentDelayQueue reopened = new PersistentDelayQueue(dir, 1000, 2000, false);
+        System.out.println("After restart: " + reopened.size() + " tasks loaded, "
+                + reopened.unloadedWindows() + " window(s) still on disk");
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            Delayed task = reopened.take();
+            System.out.println("Executed: " + ((DurableTask) task).payload + " after "
+                    + (System.currentTimeMillis() - start) + " ms");
+        }
+        reopened.close();
+        System.out.println("Journal after all fired: " + listing(dir));
+        Files.delete(dir);
+
+        // remove() in a window still on disk must only cancel that task
+        Path farDir = Files.createTempDirectory("delay-journal");
+        long due = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        PersistentDelayQueue far = new PersistentDelayQueue(farDir, 60_000, 0, false);
+        DurableTask dropped = new DurableTask(1, due, "dropped");
+        far.put(dropped);
+        far.put(new DurableTask(2, due, "kept"));
+        boolean removed = far.remove(dropped);
+        boolean removedUnknown = far.remove(new DurableTask(3, due, "never added"));
+        boolean removedTwice = far.remove(dropped);
+        far.close();
+        PersistentDelayQueue reloaded = new PersistentDelayQueue(farDir, 60_000, TimeUnit.HOURS.toMillis(2), false);
+        System.out.println("Remove on disk: " + removed + ", unknown id: " + removedUnknown + ", twice: " + removedTwice
+                + ", after reload: " + reloaded);
+        if (!removed || removedUnknown || removedTwice || reloaded.size() != 1 || reloaded.peek() == null
+                || ((DurableTask) reloaded.peek()).id != 2) {
+            throw new AssertionError("remove() in an unloaded window lost or kept the wrong tasks");
+        }
+        reloaded.close();
+        for (String name : listing(farDir)) Files.delete(farDir.resolve(name));
+        Files.delete(farDir);
+    }
+
+    private static List<String> listing(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package Queue;
+
+// DelayQueue = PriorityQueue + one ReentrantLock
+// every put / take / poll takes the lock, every sift calls compareTo
+// many producers --> they all queue up on that lock
+
+// StripedDelayQueue
+// time is cut into slots of ~1 ms, a ring of SLOTS slots (~1 s) is reused over and over
+// every slot has one lock-free stack per stripe, a producer picks its stripe by thread
+// offer --> 1 getDelay call + 1 nanoTime + 1 CAS push (no lock, no ordering work)
+// single consumer --> drainExpired(sink) swaps out every slot that is fully in the past
+// deadlines further than one revolution are pushed back until their revolution comes
+// a slot is only drained once it is completely in the past --> never early, up to one slot late
+// the consumer reads the clock once per drain and judges the whole batch by that reading
+// (DelayQueue.drainTo calls getDelay on every element it looks at)
+// a ticker-cached clock on the offer side is NOT used: when the ticker thread gets descheduled
+// the cached time falls behind and items come out early
+// elements of one drain are NOT sorted by deadline
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class StripedDelayQueue<E extends Delayed> {
+    private static final int SLOT_SHIFT = 20; // 2^20 ns ~ 1.05 ms per slot
+    private static final int SLOTS = 1024;    // one revolution ~ 1.07 s
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private static final class Node<E> {
+        @SuppressWarnings("unchecked")
+        private static final AtomicIntegerFieldUpdater<Node<?>> CLAIMED =
+                AtomicIntegerFieldUpdater.newUpdater((Class<Node<?>>) (Class<?>) Node.class, "claimed");
+        final E item;
+        final long slot;       // absolute slot number of the deadline
+        final Node<E> origin;  // itself, or the node this late copy stands in for
+        Node<E> next;
+        volatile int claimed;
+
+        Node(E item, long slot, Node<E> origin) {
+            this.item = item;
+            this.slot = slot;
+            this.origin = origin == null ? this : origin;
+        }
+
+        boolean claim() {
+            return CLAIMED.compareAndSet(origin, 0, 1);
+        }
+    }
+
+    private final int stripes;
+    private final AtomicReferenceArray<Node<E>> buckets; // stripe-major, so stripes don't share cache lines
+    private final AtomicReferenceArray<Node<E>> late;    // per stripe: pushed after the consumer passed its slot
+    private final LongAdder size = new LongAdder();
+    private volatile long drainedThrough; // every slot <= this has been (or is being) swapped out
+    private long cursor;                  // consumer only: next slot to drain
+
+    public StripedDelayQueue() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public StripedDelayQueue(int parallelism) {
+        this.stripes = Integer.highestOneBit(Math.max(2, parallelism) * 2 - 1);
+        this.buckets = new AtomicReferenceArray<>(stripes * SLOTS);
+        this.late = new AtomicReferenceArray<>(stripes);
+        this.cursor = System.nanoTime() >> SLOT_SHIFT;
+        this.drainedThrough = cursor - 1;
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 16)) & (stripes - 1);
+    }
+
+    private static <E> void push(AtomicReferenceArray<Node<E>> stacks, int index, Node<E> node) {
+        Node<E> head;
+        do {
+            head = stacks.get(index);
+            node.next = head;
+        } while (!stacks.compareAndSet(index, head, node));
+    }
+
+    public void offer(E item) {
+        long delay = item.getDelay(TimeUnit.NANOSECONDS);
+        long deadline = System.nanoTime() + delay; // read after getDelay, so the error can only make us late
+        long slot = deadline >> SLOT_SHIFT;
+        int stripe = stripe();
+        Node<E> node = new Node<>(item, slot, null);
+        size.increment();
+        if (slot <= drainedThrough) {
+            push(late, stripe, node); // already due
+            return;
+        }
+        push(buckets, stripe * SLOTS + (int) (slot & SLOT_MASK), node);
+        // The consumer may have swapped this slot out between our check and the push;
+        // a late copy covers that, claim() makes sure only one of the two is delivered.
+        if (slot <= drainedThrough) push(late, stripe, new Node<>(item, slot, node));
+    }
+
+    /**
+     * Moves every expired element into sink and returns how many were moved.
+     * Must only be called from one consumer thread at a time.
+     */
+    public int drainExpired(Collection<? super E> sink) {
+        long lastComplete = (System.nanoTime() >> SLOT_SHIFT) - 1; // one clock read for the whole batch
+        int drained = 0;
+        if (lastComplete >= cursor) {
+            drainedThrough = lastComplete; // publish before swapping, see offer()
+            long slots = Math.min(lastComplete - cursor + 1, SLOTS);
+            for (long s = cursor; s < cursor + slots; s++) {
+                int index = (int) (s & SLOT_MASK);
+                for (int stripe = 0; stripe < stripes; stripe++) {
+                    drained += drainSlot(stripe * SLOTS + index, lastComplete, sink);
+                }
+            }
+            cursor = lastComplete + 1;
+        }
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            for (Node<E> node = late.getAndSet(stripe, null); node != null; node = node.next) {
+                if (node.claim()) {
+                    sink.add(node.item);
+                    drained++;
+                }
+            }
+        }
+        if (drained > 0) size.add(-drained);
+        return drained;
+    }
+
+    private int drainSlot(int index, long lastComplete, Collection<? super E> sink) {
+        int drained = 0;
+        Node<E> node = buckets.getAndSet(index, null);
+        while (node != null) {
+            Node<E> next = node.next;
+            if (node.slot > lastComplete) {
+                push(buckets, index, node); // a later revolution
+            } else if (node.claim()) {
+                sink.add(node.item);
+                drained++;
+            }
+            node = next;
+        }
+        return drained;
+    }
+
+    /** Elements offered and not drained yet (approximate while producers are active). */
+    public long size() {
+        return size.sum();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        StripedDelayQueue<DelayedTask> queue = new StripedDelayQueue<>();
+        queue.offer(new DelayedTask("Task1", 500, TimeUnit.MILLISECONDS));
+        queue.offer(new DelayedTask("Task2", 300, TimeUnit.MILLISECONDS));
+        queue.offer(new DelayedTask("Task3", 1500, TimeUnit.MILLISECONDS)); // beyond one revolution
+        queue.offer(new DelayedTask("Task4", 0, TimeUnit.MILLISECONDS));
+
+        long start = System.currentTimeMillis();
+        List<DelayedTask> batch = new ArrayList<>();
+        while (queue.size() > 0) {
+            batch.clear();
+            if (queue.drainExpired(batch) == 0) {
+                Thread.sleep(1);
+                continue;
+            }
+            for (DelayedTask task : batch) {
+                System.out.println("Executed: " + task.getTaskName() + " after "
+                        + (System.currentTimeMillis() - start) + " ms");
+            }
+        }
+    }
+}
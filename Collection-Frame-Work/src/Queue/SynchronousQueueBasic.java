@@ -28,6 +28,9 @@ package Queue;
 //beyond which no additional elements can be put without blocking. A BlockingQueue without any
 //intrinsic capacity constraints always reports a remaining capacity of Integer.MAX_VALUE.
 
+//HandoffExecutor applies the same direct hand-off to an executor: tasks go straight into
+//an idle worker's slot, no queue in between (latency numbers in HandoffBenchmark).
+
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.SynchronousQueue;
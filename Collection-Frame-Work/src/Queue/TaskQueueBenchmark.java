@@ -0,0 +1,142 @@
+package Queue;
+
+//Idle CPU and enqueue-to-dequeue latency: polling consumers vs ParkingQueue
+//---------------------------------------------------------------------------
+//5 consumers, 1 producer, two phases per variant:
+//idle  : IDLE_MILLIS with no tasks at all          -> CPU time the consumers burn
+//paced : one task every PACE_MICROS for PACED_MILLIS -> latency p50 / p99 (+ CPU)
+//CPU is the summed per-thread CPU time of the consumers (ThreadMXBean).
+//
+//poll + sleep 200 ms : TaskSubmissionSystem's old loop
+//poll + sleep 1 ms   : the same loop tuned for latency
+//poll + onSpinWait   : never sleeps
+//ParkingQueue        : spin 100 polls, then park; offer() unparks one consumer
+//
+//java Queue.TaskQueueBenchmark
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+public class TaskQueueBenchmark {
+    private static final int CONSUMERS = 5;
+    private static final long IDLE_MILLIS = 2_000;
+    private static final long PACED_MILLIS = 2_000;
+    private static final long PACE_MICROS = 1_000;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private interface Channel {
+        void offer(long stamp);
+
+        Long next() throws InterruptedException; // null once stopped
+
+        void stop();
+    }
+
+    private interface IdleAction {
+        void idle() throws InterruptedException;
+    }
+
+    private static Channel polling(IdleAction action) {
+        ConcurrentLinkedQueue<Long> queue = new ConcurrentLinkedQueue<>();
+        return new Channel() {
+            volatile boolean stopped;
+
+            public void offer(long stamp) {
+                queue.offer(stamp);
+            }
+
+            public Long next() throws InterruptedException {
+                while (true) {
+                    Long stamp = queue.poll();
+                    if (stamp != null || stopped) return stamp;
+                    action.idle();
+                }
+            }
+
+            public void stop() {
+                stopped = true;
+            }
+        };
+    }
+
+    private static Channel parking() {
+        ParkingQueue<Long> queue = new ParkingQueue<>();
+        return new Channel() {
+            public void offer(long stamp) {
+                queue.offer(stamp);
+            }
+
+            public Long next() throws InterruptedException {
+                return queue.take();
+            }
+
+            public void stop() {
+                queue.close();
+            }
+        };
+    }
+
+    private static long cpuNanos(Thread[] threads) {
+        long total = 0;
+        for (Thread thread : threads) total += Math.max(0, THREADS.getThreadCpuTime(thread.getId()));
+        return total;
+    }
+
+    private static void run(String name, Channel channel) throws InterruptedException {
+        int samples = (int) (PACED_MILLIS * 1000 / PACE_MICROS);
+        long[] latencies = new long[samples];
+        AtomicInteger received = new AtomicInteger();
+        Thread[] consumers = new Thread[CONSUMERS];
+        for (int i = 0; i < CONSUMERS; i++) {
+            consumers[i] = new Thread(() -> {
+                try {
+                    for (Long stamp; (stamp = channel.next()) != null; ) {
+                        long latency = System.nanoTime() - stamp;
+                        int at = received.getAndIncrement();
+                        if (at < latencies.length) latencies[at] = latency;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            consumers[i].start();
+        }
+
+        long cpuStart = cpuNanos(consumers);
+        Thread.sleep(IDLE_MILLIS);
+        long idleCpu = cpuNanos(consumers) - cpuStart;
+
+        long pacedStart = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            long wait = pacedStart + TimeUnit.MICROSECONDS.toNanos(PACE_MICROS) * i - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            channel.offer(System.nanoTime());
+        }
+        while (received.get() < samples && System.nanoTime() - pacedStart < TimeUnit.SECONDS.toNanos(10)) {
+            Thread.sleep(1);
+        }
+        long pacedCpu = cpuNanos(consumers) - cpuStart - idleCpu;
+        channel.stop();
+        for (Thread consumer : consumers) consumer.join();
+
+        int n = Math.min(received.get(), samples);
+        Arrays.sort(latencies, 0, n);
+        System.out.printf("  %-20s idle CPU %7.1f ms/s   paced CPU %7.1f ms/s   latency p50 %9.1f us  p99 %9.1f us%n",
+                name, idleCpu / 1e3 / IDLE_MILLIS, pacedCpu / 1e3 / PACED_MILLIS,
+                latencies[n / 2] / 1e3, latencies[(int) (n * 0.99)] / 1e3);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors() + ", " + CONSUMERS
+                + " consumers, idle " + IDLE_MILLIS + " ms, then one task every " + PACE_MICROS + " us");
+        run("poll + sleep 200 ms", polling(() -> Thread.sleep(200)));
+        run("poll + sleep 1 ms", polling(() -> Thread.sleep(1)));
+        run("poll + onSpinWait", polling(Thread::onSpinWait));
+        run("ParkingQueue", parking());
+    }
+}
@@ -2,10 +2,13 @@ package Queue;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
+// Consumers used to spin on ConcurrentLinkedQueue.poll() and sleep 200 ms when it was empty:
+// CPU burnt while idle, up to 200 ms added to every task. ParkingQueue keeps the lock-free
+// queue but parks idle consumers; each offer() unparks exactly one of them, and close()
+// replaces the "has everyone got their share" bookkeeping (see TaskQueueBenchmark).
 public class TaskSubmissionSystem {
-    private static ConcurrentLinkedQueue<String> taskQueue = new ConcurrentLinkedQueue<>();
+    private static ParkingQueue<String> taskQueue = new ParkingQueue<>();
 
     public static void main(String[] args) {
 
@@ -15,9 +18,7 @@ public class TaskSubmissionSystem {
         int numberOfProducers = 5;
         int numberOfConsumers = 5;
         int tasksPerProducer = 2; // Each producer adds 2 tasks
-        int tasksToProcessPerConsumer = 2; // Each consumer tries to process 2 tasks
-        // Note: The total number of tasks produced will be numberOfProducers * tasksPerProducer
-        // You might need to adjust tasksToProcessPerConsumer if you want consumers to consume all tasks.
+        // Consumers take whatever arrives until the queue is closed and empty
 
         // Create and start multiple producer threads
         for (int i = 0; i < numberOfProducers; i++) {
@@ -26,7 +27,7 @@ public class TaskSubmissionSystem {
                 while (producerCounter > 0) {
                     try {
                         String task = "Task " + System.currentTimeMillis() + " from Producer " + Thread.currentThread().getId();
-                        taskQueue.add(task);
+                        taskQueue.offer(task); // unparks one waiting consumer
                         System.out.println("Produced: " + task);
                         producerCounter -= 1;
                         Thread.sleep(50); // Small delay to simulate work and allow other threads to run
@@ -46,30 +47,15 @@ public class TaskSubmissionSystem {
         // Create and start multiple consumer threads
         for (int i = 0; i < numberOfConsumers; i++) {
             Thread consumer = new Thread(() -> {
-                int consumerCounter = tasksToProcessPerConsumer;
-                // A more robust consumer might poll until a "poison pill" is received or a shared counter reaches zero
-                while (consumerCounter > 0 || !taskQueue.isEmpty()) { // Continue as long as tasks need processing OR queue is not empty
-                    try {
-                        String task = taskQueue.poll();
-                        if (task != null) {
-                            System.out.println("Processing: " + task + " by Consumer " + Thread.currentThread().getId());
-                            consumerCounter -= 1;
-                            Thread.sleep(100); // Small delay to simulate work
-                        } else {
-                            // If the queue is empty, consumer waits a bit before checking again
-                            // This is a busy-wait, for production, consider wait/notify or BlockingQueue
-                            if (consumerCounter > 0) { // Only print waiting message if still expecting tasks
-                                System.out.println("Consumer " + Thread.currentThread().getId() + " waiting for tasks...");
-                            }
-                            Thread.sleep(200);
-                        }
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt(); // Restore the interrupted status
-                        System.err.println("Consumer interrupted: " + e.getMessage());
-                        break; // Exit the loop if interrupted
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                try {
+                    String task;
+                    while ((task = taskQueue.take()) != null) { // parks while the queue is empty
+                        System.out.println("Processing: " + task + " by Consumer " + Thread.currentThread().getId());
+                        Thread.sleep(100); // Small delay to simulate work
                     }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt(); // Restore the interrupted status
+                    System.err.println("Consumer interrupted: " + e.getMessage());
                 }
                 System.out.println("Consumer " + Thread.currentThread().getId() + " finished processing tasks.");
             });
@@ -89,11 +75,8 @@ public class TaskSubmissionSystem {
         }
         System.out.println("All producers finished.");
 
-        // Wait for all consumer threads to complete
-        // Important: You need a way to signal consumers that no more tasks will be produced.
-        // Without it, consumers might busy-wait indefinitely if their `consumerCounter` isn't reached
-        // or if the queue becomes empty. For this example, they will eventually exit if their counter
-        // reaches zero OR if the queue is empty AND they have fulfilled their `tasksToProcessPerConsumer`.
+        // No more tasks: consumers drain what is left, then take() returns null
+        taskQueue.close();
         System.out.println("Waiting for all consumers to finish...");
         for (Thread consumer : consumers) {
             try {
@@ -0,0 +1,206 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+Events/sec when producer and consumer move batches of 1 .. 1024 events
+
+columns
+ProduceConsume : produceAll(int[b]) / consumeAll(out, b)       - one monitor + notifyAll per batch
+ABQ            : put per event (no batch put) / take + drainTo(b - 1)
+ring spsc      : RingBuffer.putAll(b) / take + drainTo(b - 1)   - one claim, one cursor store per batch
+ring mpsc x4   : same with 4 producers
+every queue has capacity 1024, every cell runs for CELL_MILLIS
+
+adaptive batching (ring spsc, consumer modes)
+greedy   : take + drainTo whatever is there (up to 1024)
+adaptive : AdaptiveBatchConsumer(max 1024, linger 1 ms)
+once with a producer that never stops, once with one event every ~50 us;
+latency = batch handed to the consumer - event created
+
+ProduceConsume prints per batch, System.out is discarded while measuring.
+
+java BatchThroughputBenchmark
+*/
+
+class BatchThroughputBenchmark {
+    private static final int CAPACITY = 1024;
+    private static final long CELL_MILLIS = 500;
+    private static final int POISON = -1;
+    private static final PrintStream REPORT = System.out;
+
+    interface Producer {
+        void send(int batchSize) throws InterruptedException; // sends batchSize events
+    }
+
+    interface Consumer {
+        boolean receive(int batchSize) throws InterruptedException; // false once the poison pill arrives
+    }
+
+    private static double measure(int batchSize, int producers, Producer producer, Runnable poison, Consumer consumer)
+            throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CELL_MILLIS);
+        long[] sent = new long[producers];
+        Thread consumerThread = new Thread(() -> {
+            try {
+                while (consumer.receive(batchSize)) {
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread[] threads = new Thread[producers];
+        long start = System.nanoTime();
+        consumerThread.start();
+        for (int p = 0; p < producers; p++) {
+            int id = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        producer.send(batchSize);
+                        sent[id] += batchSize;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) thread.join();
+        poison.run();
+        consumerThread.join();
+        long elapsed = System.nanoTime() - start;
+        return Arrays.stream(sent).sum() * 1e9 / elapsed;
+    }
+
+    private static double produceConsume(int b) throws InterruptedException {
+        ProduceConsume pc = new ProduceConsume(CAPACITY);
+        int[] batch = new int[b];
+        int[] out = new int[b];
+        return measure(b, 1, size -> pc.produceAll(batch), () -> {
+            try {
+                pc.produce(POISON);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, size -> {
+            int n = pc.consumeAll(out, size);
+            return out[n - 1] != POISON;
+        });
+    }
+
+    private static double arrayBlockingQueue(int b) throws InterruptedException {
+        ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<>(CAPACITY);
+        List<Integer> sink = new ArrayList<>(b);
+        return measure(b, 1, size -> {
+            for (int i = 0; i < size; i++) queue.put(i);
+        }, () -> {
+            try {
+                queue.put(POISON);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, size -> {
+            sink.clear();
+            sink.add(queue.take());
+            queue.drainTo(sink, size - 1);
+            return sink.get(sink.size() - 1) != POISON;
+        });
+    }
+
+    private static double ring(RingBuffer<Integer> ring, int producers, int b) throws InterruptedException {
+        List<Integer> batch = Collections.nCopies(b, 7);
+        List<Integer> sink = new ArrayList<>(b);
+        return measure(b, producers, size -> ring.putAll(batch), () -> {
+            try {
+                ring.put(POISON);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, size -> {
+            sink.clear();
+            sink.add(ring.take());
+            ring.drainTo(sink, size - 1);
+            return sink.get(sink.size() - 1) != POISON;
+        });
+    }
+
+    interface BatchSource {
+        int nextBatch(List<Long> sink) throws InterruptedException;
+    }
+
+    // Producer sends System.nanoTime() stamps; -1 ends the run
+    private static void adaptive(String name, boolean paced, boolean useAdaptive) throws InterruptedException {
+        RingBuffer<Long> ring = RingBuffer.spsc(CAPACITY, WaitStrategy.PARK);
+        AdaptiveBatchConsumer<Long> adaptive = new AdaptiveBatchConsumer<>(ring, CAPACITY, TimeUnit.MILLISECONDS.toNanos(1));
+        BatchSource source = useAdaptive ? adaptive::nextBatch : sink -> {
+            sink.add(ring.take());
+            return 1 + ring.drainTo(sink, CAPACITY - 1);
+        };
+        long[] latencies = new long[paced ? 50_000 : 2_000_000];
+        long[] stats = new long[2]; // events, batches
+        Thread consumer = new Thread(() -> {
+            List<Long> sink = new ArrayList<>(CAPACITY);
+            try {
+                for (boolean running = true; running; ) {
+                    sink.clear();
+                    source.nextBatch(sink);
+                    long now = System.nanoTime();
+                    stats[1]++;
+                    for (long stamp : sink) {
+                        if (stamp < 0) {
+                            running = false;
+                            break;
+                        }
+                        if (stats[0] < latencies.length) latencies[(int) stats[0]] = now - stamp;
+                        stats[0]++;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(2);
+        while (System.nanoTime() < end) {
+            ring.put(System.nanoTime());
+            if (paced) LockSupport.parkNanos(50_000);
+        }
+        ring.put(-1L);
+        consumer.join();
+        long elapsed = System.nanoTime() - start;
+        int n = (int) Math.min(stats[0], latencies.length);
+        Arrays.sort(latencies, 0, n);
+        REPORT.printf("  %-20s %,12.0f events/s  avg batch %7.1f  latency p50 %8.1f us  p99 %8.1f us%n", name,
+                stats[0] * 1e9 / elapsed, (double) stats[0] / stats[1],
+                latencies[n / 2] / 1e3, latencies[(int) (n * 0.99)] / 1e3);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // ProduceConsume logs every batch
+        REPORT.println("cores: " + Runtime.getRuntime().availableProcessors() + ", " + CELL_MILLIS + " ms per cell");
+        for (int b = 1; b <= 64; b *= 4) ring(RingBuffer.spsc(CAPACITY, WaitStrategy.PARK), 1, b); // warm-up
+
+        REPORT.printf("%6s %16s %16s %16s %16s%n", "batch", "ProduceConsume", "ABQ", "ring spsc", "ring mpsc x4");
+        for (int b = 1; b <= 1024; b *= 2) {
+            REPORT.printf("%6d %,16.0f %,16.0f %,16.0f %,16.0f%n", b, produceConsume(b), arrayBlockingQueue(b),
+                    ring(RingBuffer.spsc(CAPACITY, WaitStrategy.PARK), 1, b),
+                    ring(RingBuffer.mpsc(CAPACITY, WaitStrategy.PARK), 4, b));
+        }
+
+        REPORT.println("adaptive batching, producer flat out");
+        adaptive("greedy", false, false);
+        adaptive("adaptive", false, true);
+        REPORT.println("adaptive batching, one event every ~50 us");
+        adaptive("greedy", true, false);
+        adaptive("adaptive", true, true);
+        System.setOut(REPORT);
+    }
+}
@@ -14,7 +14,7 @@ class ProduceConsume{
 	}
 	protected void produce(int value)throws InterruptedException{
 		synchronized(this){
-			if(buffer.size()==capacity){
+			while(buffer.size()==capacity){ // while, not if: another producer may refill it before we run
 				wait();
 			}
 			buffer.offer(value);
@@ -25,7 +25,7 @@ class ProduceConsume{
 	}
 	protected int consume()throws InterruptedException{
 		synchronized(this){
-			if(buffer.isEmpty()){
+			while(buffer.isEmpty()){
 				wait();
 			}
 			int value = buffer.poll();
@@ -34,6 +34,37 @@ class ProduceConsume{
             return value;
 		}
 	}
+	// Batch versions: one monitor acquisition and one notifyAll per batch instead of per element
+	protected void produceAll(int[] values)throws InterruptedException{
+		synchronized(this){
+			int i = 0;
+			while(i < values.length){
+				while(buffer.size()==capacity){
+					wait();
+				}
+				int start = i;
+				while(i < values.length && buffer.size() < capacity){
+					buffer.offer(values[i++]);
+				}
+				notifyAll();
+				System.out.println("Produced batch of "+(i-start));
+			}
+		}
+	}
+	protected int consumeAll(int[] out, int max)throws InterruptedException{
+		synchronized(this){
+			while(buffer.isEmpty()){
+				wait();
+			}
+			int n = Math.min(max, buffer.size());
+			for(int i=0;i<n;i++){
+				out[i] = buffer.poll();
+			}
+			notifyAll();
+			System.out.println("Consumed batch of "+n);
+			return n;
+		}
+	}
 
 }
 
@@ -61,6 +92,28 @@ class ProducerConsumer{
 					}
 				});
 			}
+		// Same hand-off through a preallocated ring buffer: no lock, no notifyAll (see RingBuffer)
+		RingBuffer<Integer> ring = RingBuffer.mpmc(4, WaitStrategy.PARK);
+		for (int i=0;i< 10 ;i++ ) {
+			int value = i+1;
+			executor.submit(() -> {
+				try{
+					ring.put(value);
+					System.out.println("Ring produced : "+value);
+				}catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
+		for (int i=0;i < 10 ;i++) {
+			executor.submit(() -> {
+				try{
+					System.out.println("Ring consumed: " + ring.take());
+				}catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+				}
+			});
+		}
 		executor.shutdown();
 	}
 }
@@ -0,0 +1,424 @@
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+Bounded ring buffer in the style of the LMAX Disruptor
+
+ProduceConsume: LinkedList node per element + one monitor + notifyAll on every call
+RingBuffer    : slots preallocated once (capacity rounded up to a power of two, index = sequence & mask)
+                producers / consumers claim sequence numbers instead of taking a lock
+                nobody is woken up - a waiting side spins / yields / parks (WaitStrategy) and re-reads
+
+Variants
+spsc : one producer, one consumer  -> plain cursors, each side only publishes its own (release store)
+mpsc : many producers, one consumer -> producers claim with getAndIncrement, publish per slot
+                                       (available[] = round of the sequence, as in the Disruptor);
+                                       the consumer reads in order, so a claimed slot must always be
+                                       published - an interrupt after the claim is kept, not thrown
+mpmc : many producers, many consumers -> per-slot sequence numbers (Vyukov's bounded MPMC queue),
+                                         both sides claim with CAS
+
+Batches
+putAll(list)       : claims up to capacity slots in one step (one getAndAdd / CAS / cursor store)
+drainTo(sink, max) : takes every element already published, up to max, and frees them with one store
+AdaptiveBatchConsumer waits a bounded time for a batch to fill and learns how big a batch to wait for
+
+The hot cursors sit 128 bytes apart in one AtomicLongArray so producer and consumer
+don't invalidate each other's cache line.
+*/
+
+enum WaitStrategy {
+    BUSY_SPIN,  // lowest latency, burns a core per waiting thread
+    YIELD,      // spins a little, then gives the core to other runnable threads
+    PARK;       // spins, yields, then sleeps in short parks - idle threads cost (almost) no CPU
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = 50_000;
+
+    // Called with 0, 1, 2, ... while a put / take cannot make progress
+    void idle(int attempt) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        if (this == BUSY_SPIN || attempt < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (this == YIELD || attempt < YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
+
+abstract class RingBuffer<E> {
+    protected static final int PAD = 16; // longs between two hot counters = 128 bytes
+
+    protected final Object[] entries;
+    protected final int mask;
+    protected final WaitStrategy waitStrategy;
+
+    protected RingBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 2 || capacity > 1 << 30) throw new IllegalArgumentException("capacity " + capacity);
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.entries = new Object[size];
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    static <E> RingBuffer<E> spsc(int capacity, WaitStrategy waitStrategy) {
+        return new SingleConsumerRing<>(capacity, waitStrategy, false);
+    }
+
+    static <E> RingBuffer<E> mpsc(int capacity, WaitStrategy waitStrategy) {
+        return new SingleConsumerRing<>(capacity, waitStrategy, true);
+    }
+
+    static <E> RingBuffer<E> mpmc(int capacity, WaitStrategy waitStrategy) {
+        return new MultiConsumerRing<>(capacity, waitStrategy);
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+
+    abstract void put(E value) throws InterruptedException;
+
+    abstract E take() throws InterruptedException;
+
+    // Blocks until every value is in; claims up to capacity() slots per step instead of one per value
+    abstract void putAll(List<? extends E> values) throws InterruptedException;
+
+    // Moves up to max already published elements into sink without waiting; returns how many
+    abstract int drainTo(Collection<? super E> sink, int max);
+
+    // mpsc: a producer interrupted while it waits on a full ring still publishes what it claimed
+    public static void main(String[] args) throws InterruptedException {
+        RingBuffer<Integer> ring = mpsc(4, WaitStrategy.PARK);
+        for (int i = 0; i < 4; i++) ring.put(i);
+
+        Thread blocked = new Thread(() -> {
+            try {
+                ring.put(4);
+                System.out.println("interrupted while waiting: put(4) went through, interrupt kept: "
+                        + Thread.currentThread().isInterrupted());
+            } catch (InterruptedException e) {
+                System.out.println("interrupted while waiting: put(4) threw");
+            }
+        });
+        blocked.start();
+        Thread.sleep(100); // let it claim and wait on the full ring
+        blocked.interrupt();
+
+        Thread early = new Thread(() -> {
+            Thread.currentThread().interrupt();
+            try {
+                ring.put(-1);
+            } catch (InterruptedException e) {
+                System.out.println("interrupted before claiming: put(-1) threw, nothing claimed");
+            }
+        });
+        early.start();
+        early.join();
+        Thread later = new Thread(() -> {
+            try {
+                ring.put(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        later.start();
+
+        StringBuilder taken = new StringBuilder();
+        Thread consumer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 6; i++) taken.append(ring.take()).append(' ');
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        consumer.join(2_000);
+        if (consumer.isAlive()) {
+            System.out.println("ring wedged after: " + taken);
+            consumer.interrupt();
+        } else {
+            System.out.println("taken in order: " + taken.toString().trim());
+        }
+        blocked.join();
+        later.join();
+    }
+}
+
+final class SingleConsumerRing<E> extends RingBuffer<E> {
+    private static final int PUBLISHED = 0;      // spsc: last published sequence
+    private static final int CONSUMED = PAD;     // last sequence the consumer is done with
+    private static final int CLAIMED = 2 * PAD;  // mpsc: last claimed sequence
+    private static final int GATING_CACHE = 3 * PAD;
+
+    private final boolean multiProducer;
+    private final AtomicLongArray sequences = new AtomicLongArray(4 * PAD);
+    private final AtomicIntegerArray available; // mpsc: round (sequence >>> shift) published in each slot
+    private final int shift;
+    // producer-only (spsc)
+    private long producerSequence = -1;
+    private long cachedConsumed = -1;
+    // consumer-only
+    private long consumerSequence = -1;
+    private long cachedPublished = -1;
+
+    SingleConsumerRing(int capacity, WaitStrategy waitStrategy, boolean multiProducer) {
+        super(capacity, waitStrategy);
+        this.multiProducer = multiProducer;
+        this.shift = Integer.numberOfTrailingZeros(entries.length);
+        for (int i = PUBLISHED; i <= GATING_CACHE; i += PAD) sequences.set(i, -1);
+        this.available = multiProducer ? new AtomicIntegerArray(entries.length) : null;
+        if (multiProducer) for (int i = 0; i < entries.length; i++) available.set(i, -1);
+    }
+
+    // Returns the last of n claimed sequences once the consumer has freed all of them
+    private long claim(int n) throws InterruptedException {
+        if (multiProducer) {
+            if (Thread.interrupted()) throw new InterruptedException(); // last point where giving up is safe
+            long last = sequences.getAndAdd(CLAIMED, n) + n;
+            long wrapPoint = last - entries.length;
+            if (wrapPoint > sequences.getPlain(GATING_CACHE)) {
+                long consumed;
+                boolean interrupted = false;
+                for (int attempt = 0; wrapPoint > (consumed = sequences.getAcquire(CONSUMED)); attempt++) {
+                    try {
+                        waitStrategy.idle(attempt);
+                    } catch (InterruptedException e) {
+                        interrupted = true; // the claimed slots must still be published, or take() waits on them forever
+                    }
+                }
+                sequences.setPlain(GATING_CACHE, consumed); // only a hint, racing writes are harmless
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+            return last;
+        }
+        long last = producerSequence + n;
+        long wrapPoint = last - entries.length;
+        for (int attempt = 0; wrapPoint > cachedConsumed; attempt++) {
+            cachedConsumed = sequences.getAcquire(CONSUMED);
+            if (wrapPoint > cachedConsumed) waitStrategy.idle(attempt);
+        }
+        producerSequence = last;
+        return last;
+    }
+
+    private void publish(long first, long last) {
+        if (multiProducer) {
+            for (long seq = first; seq <= last; seq++) available.setRelease((int) seq & mask, (int) (seq >>> shift));
+        } else {
+            sequences.setRelease(PUBLISHED, last);
+        }
+    }
+
+    @Override
+    void put(E value) throws InterruptedException {
+        long seq = claim(1);
+        entries[(int) seq & mask] = value;
+        publish(seq, seq);
+    }
+
+    @Override
+    void putAll(List<? extends E> values) throws InterruptedException {
+        for (int from = 0; from < values.size(); ) {
+            int n = Math.min(values.size() - from, entries.length);
+            long last = claim(n);
+            long first = last - n + 1;
+            for (long seq = first; seq <= last; seq++) entries[(int) seq & mask] = values.get(from++);
+            publish(first, last);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    int drainTo(Collection<? super E> sink, int max) {
+        long last;
+        if (multiProducer) {
+            last = consumerSequence;
+            while (last - consumerSequence < max
+                    && available.getAcquire((int) (last + 1) & mask) == (int) ((last + 1) >>> shift)) last++;
+        } else {
+            if (cachedPublished < consumerSequence + max) cachedPublished = sequences.getAcquire(PUBLISHED);
+            last = Math.min(cachedPublished, consumerSequence + max);
+        }
+        int n = (int) (last - consumerSequence);
+        if (n <= 0) return 0;
+        for (long seq = consumerSequence + 1; seq <= last; seq++) {
+            int index = (int) seq & mask;
+            sink.add((E) entries[index]);
+            entries[index] = null;
+        }
+        sequences.setRelease(CONSUMED, last); // frees the whole batch at once
+        consumerSequence = last;
+        return n;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    E take() throws InterruptedException {
+        long next = consumerSequence + 1;
+        int index = (int) next & mask;
+        if (multiProducer) {
+            int round = (int) (next >>> shift);
+            for (int attempt = 0; available.getAcquire(index) != round; attempt++) {
+                waitStrategy.idle(attempt);
+            }
+        } else {
+            // batch effect: one read of the producer cursor covers every slot published so far
+            for (int attempt = 0; next > cachedPublished; attempt++) {
+                cachedPublished = sequences.getAcquire(PUBLISHED);
+                if (next > cachedPublished) waitStrategy.idle(attempt);
+            }
+        }
+        E value = (E) entries[index];
+        entries[index] = null;
+        sequences.setRelease(CONSUMED, next);
+        consumerSequence = next;
+        return value;
+    }
+}
+
+final class MultiConsumerRing<E> extends RingBuffer<E> {
+    private static final int ENQUEUE = 0;
+    private static final int DEQUEUE = PAD;
+
+    private final AtomicLongArray positions = new AtomicLongArray(2 * PAD);
+    // slot i holds s: s == pos -> free for producer pos, s == pos + 1 -> filled for consumer pos
+    private final AtomicLongArray slotSequences;
+
+    MultiConsumerRing(int capacity, WaitStrategy waitStrategy) {
+        super(capacity, waitStrategy);
+        this.slotSequences = new AtomicLongArray(entries.length);
+        for (int i = 0; i < entries.length; i++) slotSequences.set(i, i);
+    }
+
+    @Override
+    void put(E value) throws InterruptedException {
+        for (int attempt = 0; ; ) {
+            long pos = positions.get(ENQUEUE);
+            int index = (int) pos & mask;
+            long diff = slotSequences.getAcquire(index) - pos;
+            if (diff == 0) {
+                if (positions.compareAndSet(ENQUEUE, pos, pos + 1)) {
+                    entries[index] = value;
+                    slotSequences.setRelease(index, pos + 1);
+                    return;
+                }
+            } else if (diff < 0) {
+                waitStrategy.idle(attempt++); // full
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    E take() throws InterruptedException {
+        for (int attempt = 0; ; ) {
+            long pos = positions.get(DEQUEUE);
+            int index = (int) pos & mask;
+            long diff = slotSequences.getAcquire(index) - (pos + 1);
+            if (diff == 0) {
+                if (positions.compareAndSet(DEQUEUE, pos, pos + 1)) {
+                    E value = (E) entries[index];
+                    entries[index] = null;
+                    slotSequences.setRelease(index, pos + entries.length);
+                    return value;
+                }
+            } else if (diff < 0) {
+                waitStrategy.idle(attempt++); // empty
+            }
+        }
+    }
+
+    @Override
+    void putAll(List<? extends E> values) throws InterruptedException {
+        for (int from = 0, attempt = 0; from < values.size(); ) {
+            long pos = positions.get(ENQUEUE);
+            int limit = Math.min(values.size() - from, entries.length);
+            int free = 0;
+            while (free < limit && slotSequences.getAcquire((int) (pos + free) & mask) == pos + free) free++;
+            if (free == 0) {
+                if (slotSequences.getAcquire((int) pos & mask) < pos) waitStrategy.idle(attempt++); // full
+                continue;
+            }
+            // One CAS claims every free slot we saw; none of them can be taken back in between
+            if (positions.compareAndSet(ENQUEUE, pos, pos + free)) {
+                for (int i = 0; i < free; i++) {
+                    int index = (int) (pos + i) & mask;
+                    entries[index] = values.get(from++);
+                    slotSequences.setRelease(index, pos + i + 1);
+                }
+                attempt = 0;
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    int drainTo(Collection<? super E> sink, int max) {
+        for (;;) {
+            long pos = positions.get(DEQUEUE);
+            int limit = Math.min(max, entries.length);
+            int full = 0;
+            while (full < limit && slotSequences.getAcquire((int) (pos + full) & mask) == pos + full + 1) full++;
+            if (full == 0) return 0;
+            if (positions.compareAndSet(DEQUEUE, pos, pos + full)) {
+                for (int i = 0; i < full; i++) {
+                    int index = (int) (pos + i) & mask;
+                    sink.add((E) entries[index]);
+                    entries[index] = null;
+                    slotSequences.setRelease(index, pos + i + entries.length);
+                }
+                return full;
+            }
+        }
+    }
+}
+
+// Consumer mode that trades a bounded wait for bigger batches: after the first element
+// it keeps draining until `target` elements are in hand or maxLinger has passed.
+// A batch that fills up doubles the target (up to maxBatch), one that ends at the
+// deadline well short of it halves the target, so a quiet stream stops paying the wait.
+final class AdaptiveBatchConsumer<E> {
+    private final RingBuffer<E> ring;
+    private final int maxBatch;
+    private final long maxLingerNanos;
+    private int target = 1;
+
+    AdaptiveBatchConsumer(RingBuffer<E> ring, int maxBatch, long maxLingerNanos) {
+        this.ring = ring;
+        this.maxBatch = maxBatch;
+        this.maxLingerNanos = maxLingerNanos;
+    }
+
+    int nextBatch(Collection<? super E> sink) throws InterruptedException {
+        sink.add(ring.take());
+        long firstAt = System.nanoTime();
+        int n = 1 + ring.drainTo(sink, target - 1);
+        for (int idle = 0; n < target; ) {
+            long left = maxLingerNanos - (System.nanoTime() - firstAt);
+            if (left <= 0) break;
+            int got = ring.drainTo(sink, target - n);
+            if (got > 0) {
+                n += got;
+                idle = 0;
+            } else if (idle++ < 100) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(Math.min(left, 20_000));
+            }
+        }
+        if (n >= target) target = Math.min(maxBatch, target * 2);
+        else if (n < target / 4) target = Math.max(1, target / 2);
+        return n;
+    }
+
+    int target() {
+        return target;
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ProduceConsume vs ArrayBlockingQueue vs RingBuffer (spsc / mpsc / mpmc x wait strategies)
+
+throughput : P producers push ints as fast as they can for up to BUDGET_SECONDS
+             (or `count` items), C consumers take them; items/sec over the whole run
+latency    : 1 producer sends its clock reading (micros) roughly every 20 us,
+             1 consumer records arrival - send; p50 / p99 / max
+
+ProduceConsume prints every element, so System.out is swapped for a discarding
+stream while it runs - the numbers still include building those strings.
+Capacity 1024 for everyone except ProduceConsume (its demo size, 5, and 1024).
+
+Busy-spin needs a core per waiting thread; with fewer cores than threads it only
+makes progress when the spinning thread is preempted.
+
+java RingBufferBenchmark [count]
+*/
+
+class RingBufferBenchmark {
+    private static final int CAPACITY = 1024;
+    private static final long BUDGET_SECONDS = 3;
+    private static final int POISON = -1;
+    private static final PrintStream REPORT = System.out;
+
+    interface Channel {
+        void put(int value) throws InterruptedException;
+
+        int take() throws InterruptedException;
+    }
+
+    static Channel of(ProduceConsume pc) {
+        return new Channel() {
+            public void put(int value) throws InterruptedException {
+                pc.produce(value);
+            }
+
+            public int take() throws InterruptedException {
+                return pc.consume();
+            }
+        };
+    }
+
+    static Channel of(ArrayBlockingQueue<Integer> queue) {
+        return new Channel() {
+            public void put(int value) throws InterruptedException {
+                queue.put(value);
+            }
+
+            public int take() throws InterruptedException {
+                return queue.take();
+            }
+        };
+    }
+
+    static Channel of(RingBuffer<Integer> ring) {
+        return new Channel() {
+            public void put(int value) throws InterruptedException {
+                ring.put(value);
+            }
+
+            public int take() throws InterruptedException {
+                return ring.take();
+            }
+        };
+    }
+
+    private static void throughput(String name, Channel channel, int producers, int consumers, long count)
+            throws InterruptedException {
+        long[] consumed = new long[consumers];
+        Thread[] threads = new Thread[producers + consumers];
+        long budgetEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(BUDGET_SECONDS);
+        long start = System.nanoTime();
+        for (int c = 0; c < consumers; c++) {
+            int id = c;
+            threads[producers + c] = new Thread(() -> {
+                try {
+                    while (channel.take() != POISON) consumed[id]++;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        for (int p = 0; p < producers; p++) {
+            threads[p] = new Thread(() -> {
+                try {
+                    for (long i = 0; i < count / producers; i++) {
+                        channel.put((int) i & Integer.MAX_VALUE);
+                        if ((i & 1023) == 0 && System.nanoTime() > budgetEnd) break;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (int p = 0; p < producers; p++) threads[p].join();
+        // producers are done (join = happens-before), so main may act as the producer of the pills
+        for (int c = 0; c < consumers; c++) channel.put(POISON);
+        for (int c = 0; c < consumers; c++) threads[producers + c].join();
+        long elapsed = System.nanoTime() - start;
+        long total = Arrays.stream(consumed).sum();
+        REPORT.printf("  %-24s %,14.0f items/s  (%,d items)%n", name, total * 1e9 / elapsed, total);
+    }
+
+    private static void latency(String name, Channel channel, int samples) throws InterruptedException {
+        long base = System.nanoTime();
+        long budgetEnd = base + TimeUnit.SECONDS.toNanos(BUDGET_SECONDS);
+        int[] latencies = new int[samples];
+        int[] received = new int[1];
+        Thread consumer = new Thread(() -> {
+            try {
+                for (int sent; (sent = channel.take()) != POISON; ) {
+                    latencies[received[0]++] = (int) ((System.nanoTime() - base) / 1000) - sent;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        for (int i = 0; i < samples && System.nanoTime() < budgetEnd; i++) {
+            channel.put((int) ((System.nanoTime() - base) / 1000));
+            LockSupport.parkNanos(20_000);
+        }
+        channel.put(POISON);
+        consumer.join();
+        int n = received[0];
+        Arrays.sort(latencies, 0, n);
+        REPORT.printf("  %-24s p50 %6d us  p99 %6d us  max %7d us  (%,d samples)%n", name,
+                latencies[n / 2], latencies[(int) (n * 0.99)], latencies[n - 1], n);
+    }
+
+    private static void throughputRound(String label, int producers, int consumers, long count)
+            throws InterruptedException {
+        REPORT.println(label);
+        throughput("ProduceConsume(5)", of(new ProduceConsume(5)), producers, consumers, count);
+        throughput("ProduceConsume(1024)", of(new ProduceConsume(CAPACITY)), producers, consumers, count);
+        throughput("ArrayBlockingQueue", of(new ArrayBlockingQueue<>(CAPACITY)), producers, consumers, count);
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            RingBuffer<Integer> ring = consumers > 1 ? RingBuffer.mpmc(CAPACITY, strategy)
+                    : producers > 1 ? RingBuffer.mpsc(CAPACITY, strategy)
+                    : RingBuffer.spsc(CAPACITY, strategy);
+            String kind = consumers > 1 ? "mpmc" : producers > 1 ? "mpsc" : "spsc";
+            throughput("ring " + kind + " " + strategy, of(ring), producers, consumers, count);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long count = args.length > 0 ? Long.parseLong(args[0]) : 20_000_000;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard); // ProduceConsume logs every element
+        REPORT.println("cores: " + Runtime.getRuntime().availableProcessors() + ", up to " + BUDGET_SECONDS
+                + " s or " + count + " items per run");
+
+        throughputRound("warm-up (1P/1C)", 1, 1, count / 10);
+        throughputRound("1 producer / 1 consumer", 1, 1, count);
+        throughputRound("4 producers / 1 consumer", 4, 1, count);
+        throughputRound("4 producers / 4 consumers", 4, 4, count);
+
+        REPORT.println("latency (1P/1C, one item every ~20 us)");
+        int samples = 20_000;
+        latency("ProduceConsume(1024)", of(new ProduceConsume(CAPACITY)), samples);
+        latency("ArrayBlockingQueue", of(new ArrayBlockingQueue<>(CAPACITY)), samples);
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            latency("ring spsc " + strategy, of(RingBuffer.<Integer>spsc(CAPACITY, strategy)), samples);
+        }
+        System.setOut(REPORT);
+    }
+}
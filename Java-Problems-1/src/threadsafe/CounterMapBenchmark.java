@@ -0,0 +1,111 @@
+package threadsafe;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+/*
+Counting EVENTS events over KEYS keys (skewed: key = KEYS^u for uniform u, so key popularity
+falls off like 1/key) from THREADS threads:
+
+compute()     : the old ThreadSafeCounter - ConcurrentHashMap.compute + AtomicInteger per key
+LongAdder     : ThreadSafeCounter now - get() + LongAdder, computeIfAbsent only for new keys
+LongCounterMap: primitive open addressing, lock-free (starts small, so it resizes on the way)
+HeavyHitters  : top 100 in a fixed 4 x 65536 count-min sketch (2 MB, allocated up front)
+
+events/s and the heap the counter grew by (used heap after System.gc(), before and after
+the run) - rough, but the order of magnitude is what matters. Every counter's total is
+checked against the events sent.
+
+java -Xmx2g threadsafe.CounterMapBenchmark [keys] [events]
+*/
+class CounterMapBenchmark {
+    private static final int THREADS = 4;
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long[] events(int keys, int count) {
+        long[] events = new long[count];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < count; i++) events[i] = (long) Math.pow(keys, random.nextDouble());
+        return events;
+    }
+
+    // returns the counter so it stays reachable until the heap has been measured
+    private static Object run(String name, long[] events, Object counter, LongConsumer increment)
+            throws InterruptedException {
+        long baseline = usedHeap();
+        Thread[] threads = new Thread[THREADS];
+        int slice = events.length / THREADS;
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int from = t * slice;
+            threads[t] = new Thread(() -> {
+                for (int i = from; i < from + slice; i++) increment.accept(events[i]);
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        long elapsed = System.nanoTime() - start;
+        long heap = usedHeap() - baseline;
+        System.out.printf("  %-15s %,14.0f events/s   heap %,8d KB%n", name, (double) slice * THREADS * 1e9 / elapsed,
+                heap / 1024);
+        return counter;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 20_000_000;
+        long[] events = events(keys, count);
+        Long[] boxed = new Long[keys + 1]; // keys as objects, boxed once up front
+        for (int i = 0; i <= keys; i++) boxed[i] = (long) i;
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors() + ", " + THREADS + " threads, "
+                + count + " events over " + keys + " keys");
+
+        for (int round = 0; round < 2; round++) {
+            System.out.println(round == 0 ? "warm-up" : "measured");
+            measureCompute(events, boxed);
+            measureAdders(events, boxed);
+            measurePrimitive(events, keys);
+            HeavyHitters<Long> hitters = new HeavyHitters<>(100, 1 << 16, 4);
+            run("HeavyHitters", events, hitters, key -> hitters.increment(boxed[(int) key]));
+            if (round == 1) System.out.println("  top 5: " + hitters.topK().subList(0, 5));
+        }
+    }
+
+    // one method per counter, so each is unreachable once its method returns
+    private static void measureCompute(long[] events, Long[] boxed) throws InterruptedException {
+        ConcurrentHashMap<Object, AtomicInteger> old = new ConcurrentHashMap<>();
+        run("compute()", events, old, key -> old.compute(boxed[(int) key], (k, v) -> {
+            if (v == null) return new AtomicInteger(1);
+            v.incrementAndGet();
+            return v;
+        }));
+        check("compute()", old.values().stream().mapToLong(AtomicInteger::get).sum(), events.length);
+    }
+
+    private static void measureAdders(long[] events, Long[] boxed) throws InterruptedException {
+        ThreadSafeCounter adders = new ThreadSafeCounter();
+        run("LongAdder", events, adders, key -> adders.increment(boxed[(int) key]));
+        long total = 0;
+        for (Long key : boxed) total += adders.getCount(key);
+        check("LongAdder", total, events.length);
+    }
+
+    private static void measurePrimitive(long[] events, int keys) throws InterruptedException {
+        LongCounterMap primitive = new LongCounterMap(1_024);
+        run("LongCounterMap", events, primitive, primitive::increment);
+        long total = 0;
+        for (int key = 0; key <= keys; key++) total += primitive.get(key);
+        check("LongCounterMap", total, events.length);
+    }
+
+    private static void check(String name, long total, long expected) {
+        if (total != expected) System.out.println("  !! " + name + " counted " + total + ", expected " + expected);
+    }
+}
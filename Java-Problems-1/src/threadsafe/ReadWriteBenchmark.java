@@ -0,0 +1,206 @@
+package threadsafe;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+/*
+Read-mostly mixes (95/5 and 99/1 reads/writes) over a 4-field state; every write bumps
+all four fields, every read sums them (so a torn read is detectable).
+
+ReadWrite locked     : readLock()/readUnlock() - two ReentrantLock round trips per read
+ReadWrite optimistic : ReadWrite.read(supplier) - sequence check, no shared write
+RRWL                 : ReentrantReadWriteLock (ReadWriteCounter's plain mode)
+StampedLock optimistic (ReadWriteCounter's optimistic mode)
+
+ops/s over MEASURE_MILLIS, and p99 time for a writer to get the write lock - the number
+writer preference is meant to keep down.
+
+java threadsafe.ReadWriteBenchmark [threads]
+*/
+class ReadWriteBenchmark {
+    private static final long WARMUP_MILLIS = 300;
+    private static final long MEASURE_MILLIS = 1000;
+
+    interface Guarded {
+        long read() throws InterruptedException;
+
+        void write() throws InterruptedException;
+    }
+
+    static final class State {
+        long a, b, c, d;
+
+        void bump() {
+            a++;
+            b++;
+            c++;
+            d++;
+        }
+
+        long sum() {
+            return a + b + c + d;
+        }
+    }
+
+    static Guarded readWriteLocked() {
+        ReadWrite rw = new ReadWrite();
+        State state = new State();
+        return new Guarded() {
+            public long read() throws InterruptedException {
+                rw.readLock();
+                try {
+                    return state.sum();
+                } finally {
+                    rw.readUnlock();
+                }
+            }
+
+            public void write() throws InterruptedException {
+                rw.writeLock();
+                try {
+                    state.bump();
+                } finally {
+                    rw.writeUnlock();
+                }
+            }
+        };
+    }
+
+    static Guarded readWriteOptimistic() {
+        ReadWrite rw = new ReadWrite();
+        State state = new State();
+        return new Guarded() {
+            public long read() throws InterruptedException {
+                return rw.read(state::sum);
+            }
+
+            public void write() throws InterruptedException {
+                rw.writeLock();
+                try {
+                    state.bump();
+                } finally {
+                    rw.writeUnlock();
+                }
+            }
+        };
+    }
+
+    static Guarded reentrantReadWrite() {
+        ReentrantReadWriteLock rw = new ReentrantReadWriteLock();
+        State state = new State();
+        return new Guarded() {
+            public long read() {
+                rw.readLock().lock();
+                try {
+                    return state.sum();
+                } finally {
+                    rw.readLock().unlock();
+                }
+            }
+
+            public void write() {
+                rw.writeLock().lock();
+                try {
+                    state.bump();
+                } finally {
+                    rw.writeLock().unlock();
+                }
+            }
+        };
+    }
+
+    static Guarded stampedOptimistic() {
+        StampedLock sl = new StampedLock();
+        State state = new State();
+        return new Guarded() {
+            public long read() {
+                long stamp = sl.tryOptimisticRead();
+                long sum = state.sum();
+                if (sl.validate(stamp)) return sum;
+                stamp = sl.readLock();
+                try {
+                    return state.sum();
+                } finally {
+                    sl.unlockRead(stamp);
+                }
+            }
+
+            public void write() {
+                long stamp = sl.writeLock();
+                try {
+                    state.bump();
+                } finally {
+                    sl.unlockWrite(stamp);
+                }
+            }
+        };
+    }
+
+    // ops/s; writeWaits collects how long writers took to get the lock
+    static double run(Guarded guarded, int threads, int writePercent, long millis, long[][] writeWaits)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] ops = new long[threads];
+        long[] torn = new long[1];
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            writeWaits[id] = new long[0];
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long[] waits = new long[1 << 16];
+                int writes = 0;
+                try {
+                    start.await();
+                    long count = 0;
+                    while ((count & 255) != 0 || System.nanoTime() < deadline) {
+                        if (random.nextInt(100) < writePercent) {
+                            long before = System.nanoTime();
+                            guarded.write();
+                            if (writes < waits.length) waits[writes++] = System.nanoTime() - before;
+                        } else if ((guarded.read() & 3) != 0) {
+                            torn[0]++; // four equal fields always sum to a multiple of 4
+                        }
+                        count++;
+                    }
+                    ops[id] = count;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    writeWaits[id] = Arrays.copyOf(waits, writes);
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        if (torn[0] > 0) System.out.println("  !! " + torn[0] + " torn reads");
+        return Arrays.stream(ops).sum() * 1e9 / (System.nanoTime() - begin);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors() + ", " + threads + " threads, "
+                + MEASURE_MILLIS + " ms per cell");
+        String[] names = {"ReadWrite locked", "ReadWrite optimistic", "RRWL", "StampedLock optimistic"};
+        for (int writePercent : new int[]{5, 1}) {
+            System.out.println((100 - writePercent) + "/" + writePercent + " reads/writes");
+            for (int v = 0; v < names.length; v++) {
+                Guarded guarded = v == 0 ? readWriteLocked() : v == 1 ? readWriteOptimistic()
+                        : v == 2 ? reentrantReadWrite() : stampedOptimistic();
+                long[][] waits = new long[threads][];
+                run(guarded, threads, writePercent, WARMUP_MILLIS, waits);
+                double opsPerSecond = run(guarded, threads, writePercent, MEASURE_MILLIS, waits);
+                long[] all = Arrays.stream(waits).flatMapToLong(Arrays::stream).sorted().toArray();
+                System.out.printf("  %-24s %,14.0f ops/s   write lock p99 %9.1f us%n", names[v], opsPerSecond,
+                        all.length == 0 ? 0 : all[(int) (all.length * 0.99)] / 1e3);
+            }
+        }
+    }
+}
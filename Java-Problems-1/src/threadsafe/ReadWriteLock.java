@@ -7,21 +7,70 @@ package threadsafe; /**
  * 
  * **/
 
+import java.lang.invoke.VarHandle;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 
+/*
+ * Optimistic reads (sequence lock): every writer bumps `sequence` to an odd value when it
+ * takes the lock and back to even when it leaves. A reader notes an even sequence, reads,
+ * and accepts the result only if the sequence is still the same - no lock, no shared write.
+ *
+ *     long stamp = rw.tryOptimisticRead();
+ *     int x = this.x, y = this.y;              // may be torn, never used unless validated
+ *     if (!rw.validate(stamp)) { ...retry or readLock() ... }
+ *
+ * or simply rw.read(() -> ...), which retries a few times and then falls back to readLock().
+ * Writer preference: readLock() also waits while a writer is queued, so a steady stream of
+ * readers can't keep writers out.
+ */
 class ReadWrite {
+    private static final int OPTIMISTIC_ATTEMPTS = 3;
+
     private int readers = 0;
+    private int waitingWriters = 0;
     private boolean writing = false;
+    private volatile long sequence = 2; // odd while a writer holds the lock; 0 is never a valid stamp
     private final Lock lock = new ReentrantLock();
     private final Condition canRead = lock.newCondition();
     private final Condition canWrite = lock.newCondition();
 
+    // 0 if a writer is active right now
+    public long tryOptimisticRead() {
+        long stamp = sequence;
+        return (stamp & 1) == 0 ? stamp : 0;
+    }
+
+    // true if no writer got in since tryOptimisticRead() returned stamp
+    public boolean validate(long stamp) {
+        VarHandle.acquireFence(); // the data reads above may not move below this re-read
+        return stamp != 0 && sequence == stamp;
+    }
+
+    public <T> T read(Supplier<T> reader) throws InterruptedException {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = tryOptimisticRead();
+            if (stamp == 0) { // writer inside: let it finish rather than queue behind it
+                Thread.yield();
+                continue;
+            }
+            T value = reader.get();
+            if (validate(stamp)) return value;
+        }
+        readLock();
+        try {
+            return reader.get();
+        } finally {
+            readUnlock();
+        }
+    }
+
     public void readLock() throws InterruptedException {
         lock.lock();
         try {
-            while (writing) {
+            while (writing || waitingWriters > 0) {
                 canRead.await();
             }
             readers++;
@@ -45,10 +94,18 @@ class ReadWrite {
     public void writeLock() throws InterruptedException {
         lock.lock();
         try {
-            while (writing || readers > 0) {
-                canWrite.await();
+            waitingWriters++;
+            try {
+                while (writing || readers > 0) {
+                    canWrite.await();
+                }
+            } catch (InterruptedException e) {
+                if (--waitingWriters == 0 && !writing) canRead.signalAll(); // readers held back for us
+                throw e;
             }
+            waitingWriters--;
             writing = true;
+            sequence++; // odd: optimistic readers now fail validate()
         } finally {
             lock.unlock();
         }
@@ -57,9 +114,10 @@ class ReadWrite {
     public void writeUnlock() {
         lock.lock();
         try {
+            sequence++; // even again
             writing = false;
             canWrite.signal();
-            canRead.signalAll();
+            if (waitingWriters == 0) canRead.signalAll();
         } finally {
             lock.unlock();
         }
@@ -121,6 +179,45 @@ public class ReadWriteLock {
             }
         }
 
+        // Optimistic readers: the writer keeps x == y, a validated read never sees them differ
+        int[] point = new int[2];
+        Thread writer = new Thread(() -> {
+            for (int i = 1; i <= 100_000; i++) {
+                try {
+                    lock.writeLock();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    point[0] = i;
+                    point[1] = i;
+                } finally {
+                    lock.writeUnlock();
+                }
+            }
+        });
+        int[] torn = new int[1];
+        Thread reader = new Thread(() -> {
+            try {
+                for (int i = 0; i < 1_000_000; i++) {
+                    long[] xy = lock.read(() -> new long[]{point[0], point[1]});
+                    if (xy[0] != xy[1]) torn[0]++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        writer.start();
+        reader.start();
+        try {
+            writer.join();
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Optimistic reads that saw x != y: " + torn[0]);
+
         System.out.println("Main thread finished");
     }
 }
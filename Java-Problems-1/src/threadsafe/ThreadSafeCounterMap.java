@@ -1,8 +1,19 @@
 package threadsafe;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
+// compute() locks the key's bin on every call, even when the key is already there.
+// Existing keys now take a plain get() plus LongAdder.increment() - no lock, and hot
+// keys spread their updates over the adder's cells; only a key's first increment goes
+// through computeIfAbsent.
 class ThreadSafeCounter {
     // private Object item;
     // private AtomicInteger count = new AtomicInteger(0);
@@ -18,22 +29,291 @@ class ThreadSafeCounter {
     //     System.out.println("inserted Object into "+item.getClass().getName());
     // }
 
-    private ConcurrentHashMap<Object, AtomicInteger> counterMap = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<Object, LongAdder> counterMap = new ConcurrentHashMap<>();
 
     public void increment(Object item) {
-        counterMap.compute(item, (key, oldValue) -> {
-            if (oldValue == null) {
-                return new AtomicInteger(1);
+        LongAdder count = counterMap.get(item);
+        if (count == null) {
+            count = counterMap.computeIfAbsent(item, key -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    protected long getCount(Object item) {
+        LongAdder count = counterMap.get(item);
+        return (count != null) ? count.sum() : 0;
+    }
+
+    protected int size() {
+        return counterMap.size();
+    }
+}
+
+// Primitive long -> long counting map: no boxing, 16 bytes per slot instead of a map node,
+// key object and adder per key. Open addressing with linear probing over AtomicLongArrays,
+// split into segments so a resize only pauses the keys of one segment.
+// * existing key : probe, then CAS the value slot          (lock-free)
+// * new key      : CAS an EMPTY key slot to the key         (lock-free)
+// * resize       : one thread per segment freezes every slot of the old table (empty key
+//                  slots -> MOVED, values -> FROZEN), copies live entries into a table twice
+//                  the size and publishes it; anyone who meets a frozen slot waits for the
+//                  new table and retries there, so no increment is lost
+// Keys 0 and Long.MIN_VALUE mark slots, so they are counted in two side adders. FROZEN is a
+// value too: counts only grow (add() takes positive deltas and refuses to overflow), so a live
+// count never reaches it.
+class LongCounterMap {
+    private static final long EMPTY = 0;
+    private static final long MOVED = Long.MIN_VALUE;  // key slot of a table being copied
+    private static final long FROZEN = Long.MIN_VALUE; // value slot of a table being copied
+
+    private static final class Table {
+        final AtomicLongArray keys;
+        final AtomicLongArray values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            values = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+        }
+    }
+
+    private static final class Segment {
+        volatile Table table;
+        final AtomicInteger size = new AtomicInteger();
+        final ReentrantLock resizeLock = new ReentrantLock();
+
+        Segment(int capacity) {
+            table = new Table(capacity);
+        }
+    }
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final LongAdder zeroKey = new LongAdder();
+    private final LongAdder minKey = new LongAdder();
+
+    LongCounterMap(int expectedKeys) {
+        int segmentCount = 64;
+        segments = new Segment[segmentCount];
+        segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        // load factor 0.5 for short probe runs
+        int perSegment = Math.max(16, Integer.highestOneBit(Math.max(1, expectedKeys / segmentCount)) << 2);
+        for (int i = 0; i < segmentCount; i++) segments[i] = new Segment(perSegment);
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    void increment(long key) {
+        add(key, 1);
+    }
+
+    void add(long key, long delta) {
+        if (delta <= 0) throw new IllegalArgumentException("delta must be positive: " + delta);
+        if (key == EMPTY || key == MOVED) {
+            (key == EMPTY ? zeroKey : minKey).add(delta);
+            return;
+        }
+        int h = hash(key);
+        Segment segment = segments[h >>> segmentShift];
+        while (true) {
+            Table table = segment.table;
+            int index = insertOrFind(segment, table, key, h);
+            if (index >= 0 && addTo(table, index, delta)) return;
+            awaitNewTable(segment, table); // frozen or full: retry on the next table
+        }
+    }
+
+    // slot holding key (claimed if absent), or -1 if this table is frozen or full
+    private int insertOrFind(Segment segment, Table table, long key, int h) {
+        for (int probes = 0, i = h & table.mask; probes <= table.mask; probes++, i = (i + 1) & table.mask) {
+            long k = table.keys.get(i);
+            if (k == key) return i;
+            if (k == MOVED) return -1;
+            if (k == EMPTY) {
+                if (table.keys.compareAndSet(i, EMPTY, key)) {
+                    if (segment.size.incrementAndGet() > (table.mask + 1) / 2) resize(segment, table, false);
+                    return i;
+                }
+                k = table.keys.get(i); // lost the race: someone took or froze this slot
+                if (k == key) return i;
+                if (k == MOVED) return -1;
+            }
+        }
+        resize(segment, table, true);
+        return -1;
+    }
+
+    private static boolean addTo(Table table, int index, long delta) {
+        while (true) {
+            long v = table.values.get(index);
+            if (v == FROZEN) return false;
+            if (v > Long.MAX_VALUE - delta) throw new ArithmeticException("count overflow");
+            if (table.values.compareAndSet(index, v, v + delta)) return true;
+        }
+    }
+
+    private static void awaitNewTable(Segment segment, Table old) {
+        while (segment.table == old) Thread.onSpinWait();
+    }
+
+    private void resize(Segment segment, Table old, boolean mustWait) {
+        if (mustWait) segment.resizeLock.lock();
+        else if (!segment.resizeLock.tryLock()) return; // someone else is already on it
+        try {
+            if (segment.table != old) return;
+            Table grown = new Table((old.mask + 1) * 2);
+            int live = 0;
+            for (int i = 0; i <= old.mask; i++) {
+                long k = old.keys.get(i);
+                while (k == EMPTY && !old.keys.compareAndSet(i, EMPTY, MOVED)) k = old.keys.get(i);
+                if (k == EMPTY) continue; // now MOVED
+                long v = old.values.getAndSet(i, FROZEN);
+                for (int j = hash(k) & grown.mask; ; j = (j + 1) & grown.mask) {
+                    if (grown.keys.get(j) == EMPTY) {
+                        grown.keys.set(j, k);
+                        grown.values.set(j, v);
+                        break;
+                    }
+                }
+                live++;
+            }
+            segment.size.set(live);
+            segment.table = grown;
+        } finally {
+            segment.resizeLock.unlock();
+        }
+    }
+
+    long get(long key) {
+        if (key == EMPTY || key == MOVED) return (key == EMPTY ? zeroKey : minKey).sum();
+        int h = hash(key);
+        Segment segment = segments[h >>> segmentShift];
+        retry:
+        while (true) {
+            Table table = segment.table;
+            for (int probes = 0, i = h & table.mask; probes <= table.mask; probes++, i = (i + 1) & table.mask) {
+                long k = table.keys.get(i);
+                if (k == EMPTY) return 0;
+                if (k == MOVED) {
+                    awaitNewTable(segment, table);
+                    continue retry;
+                }
+                if (k == key) {
+                    long v = table.values.get(i);
+                    if (v != FROZEN) return v;
+                    awaitNewTable(segment, table);
+                    continue retry;
+                }
+            }
+            return 0;
+        }
+    }
+
+    long size() {
+        long size = (zeroKey.sum() != 0 ? 1 : 0) + (minKey.sum() != 0 ? 1 : 0);
+        for (Segment segment : segments) size += segment.size.get();
+        return size;
+    }
+}
+
+// Top-K heavy hitters in fixed memory: a count-min sketch (depth rows x width counters)
+// estimates every key's count, never under-counting and over-counting by at most
+// e/width * total with probability 1 - e^-depth. A set of at most k candidates holds the
+// keys whose estimate beat the smallest candidate's.
+// * increment : depth lock-free getAndIncrement()s; the lock is taken only when a key that is
+//               not a candidate yet reaches the current admission threshold
+// * topK()    : candidates sorted by their current estimate
+class HeavyHitters<K> {
+    record Entry<K>(K key, long estimate) {
+    }
+
+    private final int k;
+    private final int depth;
+    private final int widthMask;
+    private final AtomicLongArray sketch;
+    private final int[] seeds;
+    private final Map<K, Boolean> candidates = new ConcurrentHashMap<>();
+    private final ReentrantLock admission = new ReentrantLock();
+    private volatile long threshold; // smallest candidate estimate once k candidates are held
+
+    HeavyHitters(int k, int width, int depth) {
+        this.k = k;
+        this.depth = depth;
+        this.widthMask = Integer.highestOneBit(Math.max(2, width)) - 1;
+        this.sketch = new AtomicLongArray(depth * (widthMask + 1));
+        this.seeds = new int[depth];
+        for (int row = 0; row < depth; row++) seeds[row] = 0x9E3779B9 * (row + 1);
+    }
+
+    private int cell(int row, int hash) {
+        int h = (hash ^ seeds[row]) * 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return row * (widthMask + 1) + (h & widthMask);
+    }
+
+    void increment(K key) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, sketch.incrementAndGet(cell(row, hash)));
+        }
+        if (estimate < threshold || candidates.containsKey(key)) return;
+        admit(key, estimate);
+    }
+
+    long estimate(K key) {
+        int hash = key.hashCode();
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) estimate = Math.min(estimate, sketch.get(cell(row, hash)));
+        return estimate;
+    }
+
+    private void admit(K key, long estimate) {
+        admission.lock();
+        try {
+            if (candidates.containsKey(key)) return;
+            if (candidates.size() < k) {
+                candidates.put(key, Boolean.TRUE);
             } else {
-                oldValue.incrementAndGet();
-                return oldValue;
+                K weakest = null;
+                long weakestEstimate = Long.MAX_VALUE;
+                for (K candidate : candidates.keySet()) {
+                    long e = estimate(candidate);
+                    if (e < weakestEstimate) {
+                        weakest = candidate;
+                        weakestEstimate = e;
+                    }
+                }
+                if (estimate <= weakestEstimate) {
+                    threshold = weakestEstimate; // stale threshold caught up, nothing to evict
+                    return;
+                }
+                candidates.remove(weakest);
+                candidates.put(key, Boolean.TRUE);
+            }
+            if (candidates.size() == k) {
+                long min = Long.MAX_VALUE;
+                for (K candidate : candidates.keySet()) min = Math.min(min, estimate(candidate));
+                threshold = min;
             }
-        });
+        } finally {
+            admission.unlock();
+        }
     }
-    
-    protected int getCount(Object item) {
-        AtomicInteger count = counterMap.get(item);
-        return (count != null) ? count.get() : 0;
+
+    List<Entry<K>> topK() {
+        List<Entry<K>> top = new ArrayList<>();
+        for (K candidate : candidates.keySet()) top.add(new Entry<>(candidate, estimate(candidate)));
+        top.sort(Comparator.comparingLong((Entry<K> e) -> e.estimate()).reversed());
+        return top;
     }
 }
 
@@ -66,5 +346,16 @@ class ThreadSafeCounterMap{
         System.out.println("item-1 count: " + counterMap.getCount("item-1"));
         System.out.println("item-2 count: " + counterMap.getCount("item-2"));
         System.out.println("item-3 count: " + counterMap.getCount("item-3"));
+
+        LongCounterMap primitive = new LongCounterMap(1_000);
+        HeavyHitters<Long> topThree = new HeavyHitters<>(3, 1 << 10, 4);
+        for (long event = 1; event <= 100_000; event++) {
+            long key = event % 10 == 0 ? 42 : event % 7 == 0 ? 7 : event % 1_000; // two hot keys over 1000
+            primitive.increment(key);
+            topThree.increment(key);
+        }
+        System.out.println("distinct keys: " + primitive.size() + ", key 42: " + primitive.get(42)
+                + ", key 7: " + primitive.get(7) + ", key 0: " + primitive.get(0));
+        System.out.println("top 3: " + topThree.topK());
 	}
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+/*
+
+## Fixed vs adaptive concurrency limits against a backend that degrades with load
+
+SimulatedBackend serves CAPACITY calls at BASE_MILLIS each. Past that, every extra
+concurrent call stretches everyone's latency (queueing), and beyond 3x capacity
+calls start failing. A well-chosen limit sits near CAPACITY; too low wastes the
+backend, too high buys nothing but latency and errors.
+
+CLIENTS threads each submit a task through TaskExecutor.submitTask (logging discarded)
+and wait for it before submitting the next, so there are never more than CLIENTS
+tasks queued or running. Reported: throughput, p50/p99 task latency (submit to
+completion), error count and the limit / queueing delay the executor exports.
+
+java AdaptiveLimitBenchmark [tasksPerClient]
+
+* */
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class AdaptiveLimitBenchmark {
+    private static final int CAPACITY = 32;
+    private static final long BASE_MILLIS = 5;
+    private static final int CLIENTS = 200;
+    private static final PrintStream REPORT = System.out; // captured before main() silences System.out
+
+    static final class SimulatedBackend {
+        private final AtomicInteger concurrent = new AtomicInteger();
+
+        Object call() throws InterruptedException {
+            int now = concurrent.incrementAndGet();
+            try {
+                if (now > CAPACITY * 3 && ThreadLocalRandom.current().nextInt(4) == 0) {
+                    throw new IllegalStateException("backend overloaded");
+                }
+                double overload = Math.max(1.0, (double) now / CAPACITY);
+                Thread.sleep((long) (BASE_MILLIS * overload * overload));
+                return now;
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+    }
+
+    private static Task backendTask(SimulatedBackend backend) {
+        return new Task() {
+            @Override
+            public CompletableFuture<Object> execute() {
+                return execute(Runnable::run, new CancellationToken());
+            }
+
+            @Override
+            public CompletableFuture<Object> execute(java.util.concurrent.Executor executor, CancellationToken token) {
+                return CompletableFuture.supplyAsync(() -> {
+                    CancellationToken.Registration interrupts = token.interruptOnCancel();
+                    try {
+                        return backend.call();
+                    } catch (InterruptedException e) {
+                        throw token.asCancellation(token.reason());
+                    } finally {
+                        interrupts.close();
+                    }
+                }, executor);
+            }
+        };
+    }
+
+    private static void run(String name, TaskExecutor executor, int tasksPerClient) throws InterruptedException {
+        SimulatedBackend backend = new SimulatedBackend();
+        LongAdder errors = new LongAdder();
+        long[][] latencies = new long[CLIENTS][tasksPerClient];
+        Thread[] clients = new Thread[CLIENTS];
+        long start = System.nanoTime();
+        for (int c = 0; c < CLIENTS; c++) {
+            int client = c;
+            clients[c] = new Thread(() -> {
+                for (int i = 0; i < tasksPerClient; i++) {
+                    long submitted = System.nanoTime();
+                    try {
+                        executor.submitTask("call-" + client + "-" + i, backendTask(backend), List.of()).join();
+                    } catch (RuntimeException e) {
+                        errors.increment();
+                    }
+                    latencies[client][i] = System.nanoTime() - submitted;
+                }
+            });
+            clients[c].start();
+        }
+        for (Thread client : clients) client.join();
+        long elapsed = System.nanoTime() - start;
+        int limit = executor.currentLimit();
+        double queueDelay = executor.queueDelayMillis();
+        executor.cancelAll();
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        REPORT.printf("%-18s %7.0f task/s  p50 %7.1f ms  p99 %7.1f ms  errors %5d  limit %4d  queue delay %7.1f ms%n",
+                name, all.length * 1e9 / elapsed, all[all.length / 2] / 1e6, all[(int) (all.length * 0.99)] / 1e6,
+                errors.sum(), limit, queueDelay);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        PrintStream err = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard); // submitTask logs every completion / failure
+        System.setErr(discard);
+        REPORT.println("Backend capacity " + CAPACITY + ", " + BASE_MILLIS + " ms per call, "
+                + CLIENTS + " clients x " + tasks + " tasks");
+
+        run("fixed 4", new TaskExecutor(4, 10_000, ExecutionMode.VIRTUAL_THREADS), tasks);
+        run("fixed 32", new TaskExecutor(32, 10_000, ExecutionMode.VIRTUAL_THREADS), tasks);
+        run("fixed 256", new TaskExecutor(256, 10_000, ExecutionMode.VIRTUAL_THREADS), tasks);
+        run("adaptive AIMD", new TaskExecutor(AdaptiveLimiter.aimd(4, 256, BASE_MILLIS * 2), 10_000), tasks);
+        run("adaptive gradient", new TaskExecutor(AdaptiveLimiter.gradient(4, 256), 10_000), tasks);
+        System.setOut(REPORT);
+        System.setErr(err);
+    }
+}
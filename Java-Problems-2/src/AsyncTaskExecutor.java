@@ -23,30 +23,299 @@ Use CompletableFuture for asynchronous execution and composition, along with an
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 
+// Cooperative cancellation + deadline handed from TaskExecutor into Task.execute().
+// Cancelling a token runs its callbacks once: interrupt the thread running the body,
+// fail the task's future, and cancel child tokens (the tasks that depend on it).
+class CancellationToken {
+    interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    // One daemon thread for every deadline; removeOnCancel drops a timer from the queue as soon
+    // as its task finishes, so finished tokens aren't kept reachable until their timeout
+    private static final ScheduledThreadPoolExecutor DEADLINES = newDeadlineScheduler();
+
+    private final Set<Runnable> callbacks = new LinkedHashSet<>(); // guarded by this
+    private boolean detached; // guarded by this
+    private Registration parentLink; // guarded by this
+    private ScheduledFuture<?> deadlineTimer; // guarded by this
+    private volatile Throwable reason;
+    private volatile long deadlineNanos = Long.MAX_VALUE;
+
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    // CancellationException, or TimeoutException once the deadline has passed
+    public Throwable reason() {
+        return reason;
+    }
+
+    public void throwIfCancelled() {
+        Throwable cause = reason;
+        if (cause != null) throw asCancellation(cause);
+    }
+
+    public CancellationException asCancellation(Throwable cause) {
+        if (cause instanceof CancellationException ce) return ce;
+        CancellationException ce = new CancellationException(cause.getMessage());
+        ce.initCause(cause);
+        return ce;
+    }
+
+    public boolean cancel() {
+        return cancel(new CancellationException("Cancelled"));
+    }
+
+    public boolean cancel(Throwable cause) {
+        List<Runnable> toRun;
+        ScheduledFuture<?> timer;
+        synchronized (this) {
+            if (reason != null || detached) return false;
+            reason = cause;
+            toRun = new ArrayList<>(callbacks);
+            callbacks.clear();
+            timer = deadlineTimer;
+            deadlineTimer = null;
+        }
+        if (timer != null) timer.cancel(false);
+        toRun.forEach(Runnable::run);
+        return true;
+    }
+
+    // Runs callback on cancellation (right away if already cancelled) until closed
+    public Registration onCancel(Runnable callback) {
+        synchronized (this) {
+            if (detached) return () -> {};
+            if (reason == null) {
+                callbacks.add(callback);
+                return () -> {
+                    synchronized (this) {
+                        callbacks.remove(callback);
+                    }
+                };
+            }
+        }
+        callback.run();
+        return () -> {};
+    }
+
+    // Token that is cancelled whenever this one is (but not the other way round)
+    public CancellationToken child() {
+        CancellationToken child = new CancellationToken();
+        Registration link = onCancel(() -> child.cancel(reason));
+        synchronized (child) {
+            child.parentLink = link;
+        }
+        return child;
+    }
+
+    // The work is over: drop callbacks, unlink from the parent, stop the deadline timer
+    // and ignore later cancels
+    public void detach() {
+        Registration link;
+        ScheduledFuture<?> timer;
+        synchronized (this) {
+            detached = true;
+            callbacks.clear();
+            link = parentLink;
+            parentLink = null;
+            timer = deadlineTimer;
+            deadlineTimer = null;
+        }
+        if (timer != null) timer.cancel(false);
+        if (link != null) link.close();
+    }
+
+    // Interrupts the calling thread on cancellation, until the registration is closed.
+    // Closing clears an interrupt we delivered so a pooled thread isn't left interrupted.
+    public Registration interruptOnCancel() {
+        Thread thread = Thread.currentThread();
+        Object guard = new Object();
+        boolean[] active = {true};
+        Registration registration = onCancel(() -> {
+            synchronized (guard) {
+                if (active[0]) thread.interrupt();
+            }
+        });
+        return () -> {
+            registration.close();
+            synchronized (guard) {
+                active[0] = false;
+            }
+            if (isCancelled()) Thread.interrupted();
+        };
+    }
+
+    // Starts the clock: the token cancels itself with a TimeoutException when it runs out.
+    // The callbacks run on the common pool, not on the shared timer thread.
+    public void startDeadline(long timeoutMillis) {
+        deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        ScheduledFuture<?> timer = DEADLINES.schedule(() -> ForkJoinPool.commonPool().execute(
+                        () -> cancel(new TimeoutException("Deadline of " + timeoutMillis + " ms exceeded"))),
+                timeoutMillis, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> replaced;
+        synchronized (this) {
+            if (detached || reason != null) {
+                replaced = timer; // already over, nothing to time
+            } else {
+                replaced = deadlineTimer;
+                deadlineTimer = timer;
+            }
+        }
+        if (replaced != null) replaced.cancel(false);
+    }
+
+    private static ScheduledThreadPoolExecutor newDeadlineScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "task-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    // Time left before the deadline, for tasks that want to bound their own blocking calls
+    public long remainingMillis() {
+        long deadline = deadlineNanos;
+        if (deadline == Long.MAX_VALUE) return Long.MAX_VALUE;
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+}
+
 interface Task {
     CompletableFuture<Object> execute();
+
+    // Lets the executor decide where the task body runs; tasks that don't care keep execute()
+    default CompletableFuture<Object> execute(Executor executor) {
+        return execute();
+    }
+
+    // Tasks that check the token (or block interruptibly) stop early when cancelled
+    default CompletableFuture<Object> execute(Executor executor, CancellationToken token) {
+        return execute(executor);
+    }
+
+    // Tasks with equal non-null keys (same logical id and inputs) are run once and share the result
+    default Object cacheKey() {
+        return null;
+    }
+}
+
+// Content-keyed memo for TaskExecutor. A task whose key is in flight shares that run's
+// future; finished results stay in a bounded LRUCache until their TTL runs out.
+class TaskMemo {
+    record Claim(CompletableFuture<Object> future, CancellationToken token) {}
+
+    private record Result(Object value, long expiresAtNanos) {}
+
+    private final Map<Object, Claim> inFlight = new ConcurrentHashMap<>();
+    private final LRUCache<Object, Result> results;
+    private final LRUCache<String, Object> keysByTaskId; // lets dependents name a finished memoized task
+    private final long ttlNanos;
+
+    public TaskMemo(int capacity, long ttlMillis) {
+        this.results = new LRUCache<>(capacity);
+        this.keysByTaskId = new LRUCache<>(capacity, StatsCounter.disabled());
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    // Null when `ours` now owns the key, otherwise the claim of the run already in flight
+    Claim claim(Object key, Claim ours) {
+        return inFlight.putIfAbsent(key, ours);
+    }
+
+    // The owner publishes the result before giving up the claim, so whoever claims the key
+    // next either sees this claim or finds the result with completed()
+    void finish(Object key, Claim ours, Object value, Throwable failure) {
+        if (failure == null) results.put(key, new Result(value, System.nanoTime() + ttlNanos));
+        inFlight.remove(key, ours);
+        if (failure != null) ours.future().completeExceptionally(failure);
+        else ours.future().complete(value);
+    }
+
+    // The claim found a live result: hand it on without rewriting the result, so a hot key
+    // still expires ttl after it was computed rather than after its last hit
+    void finishHit(Object key, Claim ours, Object value) {
+        inFlight.remove(key, ours);
+        ours.future().complete(value);
+    }
+
+    // A finished result for the key that is still within its TTL, or null
+    CompletableFuture<Object> completed(Object key) {
+        Result result = results.get(key);
+        if (result == null) return null;
+        if (System.nanoTime() - result.expiresAtNanos() > 0) {
+            results.remove(key, RemovalCause.EXPIRY);
+            return null;
+        }
+        return CompletableFuture.completedFuture(result.value());
+    }
+
+    CompletableFuture<Object> completedByTaskId(String taskId) {
+        Object key = keysByTaskId.get(taskId);
+        return key == null ? null : completed(key);
+    }
+
+    void alias(String taskId, Object key) {
+        keysByTaskId.put(taskId, key);
+    }
+
+    public CacheStats stats() {
+        return results.stats();
+    }
 }
 
 class SimpleTask implements Task {
     private final String name;
+    private final Object cacheKey;
 
     public SimpleTask(String name) {
+        this(name, null);
+    }
+
+    public SimpleTask(String name, Object cacheKey) {
         this.name = name;
+        this.cacheKey = cacheKey;
+    }
+
+    @Override
+    public Object cacheKey() {
+        return cacheKey;
     }
 
     @Override
     public CompletableFuture<Object> execute() {
+        return execute(ForkJoinPool.commonPool());
+    }
+
+    @Override
+    public CompletableFuture<Object> execute(Executor executor) {
+        return execute(executor, new CancellationToken());
+    }
+
+    @Override
+    public CompletableFuture<Object> execute(Executor executor, CancellationToken token) {
         return CompletableFuture.supplyAsync(() -> {
-            System.out.println("Running task: " + name);
+            CancellationToken.Registration interrupts = token.interruptOnCancel();
             try {
+                token.throwIfCancelled(); // cancelled while still queued
+                System.out.println("Running task: " + name);
                 Thread.sleep(1000); // Simulate work
             } catch (InterruptedException e) {
+                if (token.isCancelled()) throw token.asCancellation(token.reason());
                 throw new RuntimeException("Task interrupted");
+            } finally {
+                interrupts.close();
             }
             return "Result - " + name;
-        });
+        }, executor);
     }
 }
 
@@ -66,23 +335,312 @@ class DependentTask implements Task {
 
     @Override
     public CompletableFuture<Object> execute() {
+        return execute(executor, new CancellationToken());
+    }
+
+    @Override
+    public CompletableFuture<Object> execute(Executor executor, CancellationToken token) {
         return CompletableFuture.supplyAsync(() -> {
+            token.throwIfCancelled();
             System.out.println("Running dependent task: " + name + " with dependencies: " + dependencyResults);
             return "Dependent result of " + name;
         }, executor);
     }
 }
 
+enum ExecutionMode {
+    // concurrencyLimit platform threads; the pool size is the limit
+    FIXED_POOL,
+    // a new (virtual) thread per task; a Semaphore of concurrencyLimit permits is the limit
+    VIRTUAL_THREADS;
+
+    // Virtual threads are JDK 21+. Looked up reflectively so the module still builds on 17,
+    // where we fall back to platform threads - still one per running task, never more
+    // than concurrencyLimit alive, since a thread is only started once a permit is held.
+    static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
+
+// Gate for the thread-per-task mode: a task thread is only started once tryAcquire() succeeds
+interface ConcurrencyLimiter {
+    enum Outcome { SUCCESS, DROPPED, IGNORED } // DROPPED: failed or timed out, IGNORED: never ran
+
+    boolean tryAcquire();
+
+    void release(long latencyNanos, Outcome outcome);
+
+    int limit();
+
+    int inFlight();
+}
+
+class SemaphoreLimiter implements ConcurrencyLimiter {
+    private final Semaphore permits;
+    private final int limit;
+
+    SemaphoreLimiter(int limit) {
+        this.permits = new Semaphore(limit);
+        this.limit = limit;
+    }
+
+    @Override public boolean tryAcquire() { return permits.tryAcquire(); }
+    @Override public void release(long latencyNanos, Outcome outcome) { permits.release(); }
+    @Override public int limit() { return limit; }
+    @Override public int inFlight() { return limit - permits.availablePermits(); }
+}
+
+/*
+ * Limit that follows the downstream system instead of being fixed upfront.
+ *  AIMD     - +1 per round of `limit` successes while at least half the limit is in use;
+ *             x0.9 on a failure, timeout or a latency above the target.
+ *  GRADIENT - Vegas-style: compares recent latency (EWMA) with the no-load latency
+ *             (minimum over the last MIN_WINDOW samples). While they are within
+ *             TOLERANCE the limit grows by about sqrt(limit) per round of `limit`
+ *             samples; when latency climbs (queues building downstream) it shrinks in
+ *             proportion, at most halving.
+ * Growth is per round rather than per sample because a sample only reflects the load
+ * from when its task started; growing faster overshoots before the latency catches up.
+ */
+class AdaptiveLimiter implements ConcurrencyLimiter {
+    enum Algorithm { AIMD, GRADIENT }
+
+    private static final double BACKOFF = 0.9;
+    private static final double TOLERANCE = 1.5;
+    private static final int MIN_WINDOW = 1000;
+    private final Algorithm algorithm;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos; // AIMD only
+    private final LongAdder drops = new LongAdder();
+    // guarded by this
+    private double limit;
+    private int inFlight;
+    private double recentLatency;              // EWMA
+    private long noLoadLatency = Long.MAX_VALUE; // minimum of the current window
+    private long windowMin = Long.MAX_VALUE;     // minimum collected for the next window
+    private int windowSamples;
+
+    private AdaptiveLimiter(Algorithm algorithm, int minLimit, int maxLimit, long latencyTargetNanos) {
+        if (minLimit <= 0 || maxLimit < minLimit) throw new IllegalArgumentException("Need 0 < minLimit <= maxLimit");
+        this.algorithm = algorithm;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = latencyTargetNanos;
+        this.limit = minLimit;
+    }
+
+    public static AdaptiveLimiter aimd(int minLimit, int maxLimit, long latencyTargetMillis) {
+        return new AdaptiveLimiter(Algorithm.AIMD, minLimit, maxLimit, TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis));
+    }
+
+    public static AdaptiveLimiter gradient(int minLimit, int maxLimit) {
+        return new AdaptiveLimiter(Algorithm.GRADIENT, minLimit, maxLimit, Long.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) return false;
+        inFlight++;
+        return true;
+    }
+
+    @Override
+    public synchronized void release(long latencyNanos, Outcome outcome) {
+        boolean busy = inFlight * 2 >= (int) limit; // only grow a limit that is actually used
+        inFlight--;
+        if (outcome == Outcome.IGNORED) return;
+        if (outcome == Outcome.DROPPED) {
+            drops.increment();
+            limit = Math.max(minLimit, limit * BACKOFF);
+            return;
+        }
+        if (algorithm == Algorithm.AIMD) {
+            if (latencyNanos > latencyTargetNanos) limit = Math.max(minLimit, limit * BACKOFF);
+            else if (busy) limit = Math.min(maxLimit, limit + 1 / limit);
+            return;
+        }
+        // Rolling the minimum lets the baseline follow a backend that got slower for good
+        windowMin = Math.min(windowMin, latencyNanos);
+        noLoadLatency = Math.min(noLoadLatency, latencyNanos);
+        if (++windowSamples == MIN_WINDOW) {
+            noLoadLatency = windowMin;
+            windowMin = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+        recentLatency = recentLatency == 0 ? latencyNanos : recentLatency + (latencyNanos - recentLatency) * 0.1;
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * noLoadLatency / recentLatency));
+        double target = limit * gradient + Math.sqrt(limit);
+        if (target < limit) limit = Math.max(minLimit, limit * 0.8 + target * 0.2);
+        else if (busy) limit = Math.min(maxLimit, limit + (target - limit) / limit);
+    }
+
+    @Override
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    @Override
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public long drops() {
+        return drops.sum();
+    }
+}
+
 class TaskExecutor {
     private final Map<String, CompletableFuture<Object>> activeTasks = new ConcurrentHashMap<>();
+    private final Map<String, CancellationToken> taskTokens = new ConcurrentHashMap<>();
     private final Map<String, List<String>> taskGraph = new ConcurrentHashMap<>();
     private final ExecutorService executor;
     private final long timeoutMillis;
     private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final CancellationToken rootToken = new CancellationToken(); // parent of every task token
+    private final AtomicInteger runningTasks = new AtomicInteger();
+    private final ConcurrencyLimiter limiter; // null in FIXED_POOL mode
+    private final Queue<Runnable> waitingForPermit = new ConcurrentLinkedQueue<>();
+    private volatile double queueDelayNanos; // EWMA; racing updates may drop a sample, fine for a gauge
+    private final int concurrencyLimit;
+    private volatile ForkJoinPool batchPool; // created on first submitAll()
+    private final TaskMemo memo; // null: cache keys are ignored
 
     public TaskExecutor(int concurrencyLimit, long timeoutMillis) {
-        this.executor = Executors.newFixedThreadPool(concurrencyLimit);
+        this(concurrencyLimit, timeoutMillis, ExecutionMode.FIXED_POOL);
+    }
+
+    public TaskExecutor(int concurrencyLimit, long timeoutMillis, ExecutionMode mode) {
+        this(concurrencyLimit, timeoutMillis, mode, new TaskMemo(1024, 60_000));
+    }
+
+    public TaskExecutor(int concurrencyLimit, long timeoutMillis, ExecutionMode mode, TaskMemo memo) {
+        if (mode == ExecutionMode.VIRTUAL_THREADS) {
+            this.executor = ExecutionMode.newThreadPerTaskExecutor();
+            this.limiter = new SemaphoreLimiter(concurrencyLimit);
+        } else {
+            this.executor = Executors.newFixedThreadPool(concurrencyLimit);
+            this.limiter = null;
+        }
+        this.concurrencyLimit = concurrencyLimit;
+        this.timeoutMillis = timeoutMillis;
+        this.memo = memo;
+    }
+
+    // Thread-per-task mode gated by a custom (e.g. adaptive) limiter
+    public TaskExecutor(ConcurrencyLimiter limiter, long timeoutMillis) {
+        this.executor = ExecutionMode.newThreadPerTaskExecutor();
+        this.limiter = limiter;
+        this.concurrencyLimit = Runtime.getRuntime().availableProcessors(); // only sizes the submitAll pool
         this.timeoutMillis = timeoutMillis;
+        this.memo = new TaskMemo(1024, 60_000);
+    }
+
+    // Starts the task body under the concurrency limit of the current mode. The deadline
+    // starts here too - in permit-gated mode only once the permit is held, so time spent
+    // queued for a permit does not count against it.
+    private CompletableFuture<Object> launch(Task task, CancellationToken token) {
+        if (limiter == null) {
+            token.startDeadline(timeoutMillis);
+            return task.execute(executor, token);
+        }
+
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        long queuedAt = System.nanoTime();
+        waitingForPermit.add(() -> {
+            long startedAt = System.nanoTime();
+            queueDelayNanos += (startedAt - queuedAt - queueDelayNanos) * 0.1;
+            CompletableFuture<Object> body;
+            boolean started = !token.isCancelled();
+            if (!started) {
+                body = CompletableFuture.failedFuture(token.reason()); // never started, just give the permit back
+            } else {
+                token.startDeadline(timeoutMillis);
+                try {
+                    // Runnable::run keeps the (blocking) body on this thread, which owns the permit
+                    body = task.execute(Runnable::run, token);
+                } catch (RuntimeException e) {
+                    body = CompletableFuture.failedFuture(e);
+                }
+            }
+            body.whenComplete((res, ex) -> {
+                ConcurrencyLimiter.Outcome outcome;
+                if (!started) outcome = ConcurrencyLimiter.Outcome.IGNORED;
+                else if (ex == null) outcome = ConcurrencyLimiter.Outcome.SUCCESS;
+                else if (token.reason() instanceof TimeoutException) outcome = ConcurrencyLimiter.Outcome.DROPPED;
+                else if (ex instanceof CancellationException) outcome = ConcurrencyLimiter.Outcome.IGNORED; // caller cancelled
+                else outcome = ConcurrencyLimiter.Outcome.DROPPED;
+                limiter.release(System.nanoTime() - startedAt, outcome);
+                startWaiting();
+                if (ex != null) result.completeExceptionally(ex);
+                else result.complete(res);
+            });
+        });
+        startWaiting();
+        return result;
+    }
+
+    // Every release is followed by another call here, so a queued task can't be stranded
+    private void startWaiting() {
+        while (!waitingForPermit.isEmpty() && limiter.tryAcquire()) {
+            Runnable next = waitingForPermit.poll();
+            if (next == null) {
+                limiter.release(0, ConcurrencyLimiter.Outcome.IGNORED);
+                return;
+            }
+            try {
+                executor.execute(next);
+            } catch (RejectedExecutionException e) {
+                limiter.release(0, ConcurrencyLimiter.Outcome.IGNORED); // cancelled, the executor is shut down
+                return;
+            }
+        }
+    }
+
+    // Counts the task in the gauge until it finishes or is cancelled, whichever comes
+    // first - a cancelled task stops counting before its thread unwinds.
+    private CompletableFuture<Object> run(Task task, CancellationToken token) {
+        if (token.isCancelled()) return CompletableFuture.failedFuture(token.reason());
+        runningTasks.incrementAndGet();
+        AtomicBoolean counted = new AtomicBoolean(true);
+        Runnable uncount = () -> {
+            if (counted.compareAndSet(true, false)) runningTasks.decrementAndGet();
+        };
+        CancellationToken.Registration registration = token.onCancel(uncount);
+        CompletableFuture<Object> body;
+        try {
+            body = launch(task, token);
+        } catch (RuntimeException e) {
+            body = CompletableFuture.failedFuture(e);
+        }
+        return body.whenComplete((res, ex) -> {
+            registration.close();
+            uncount.run();
+        });
+    }
+
+    public int availablePermits() {
+        return limiter == null ? -1 : limiter.limit() - limiter.inFlight();
+    }
+
+    // Current concurrency limit (the pool size in FIXED_POOL mode)
+    public int currentLimit() {
+        return limiter == null ? concurrencyLimit : limiter.limit();
+    }
+
+    // Smoothed time tasks spend waiting for a permit; always 0 in FIXED_POOL mode
+    public double queueDelayMillis() {
+        return queueDelayNanos / 1e6;
+    }
+
+    // Tasks launched and not finished: their dependencies are done, and the body is running or
+    // still queued for a pool thread (FIXED_POOL) or a permit. Cancelled ones drop out immediately.
+    public int activeTaskCount() {
+        return runningTasks.get();
     }
 
     public CompletableFuture<Object> submitTask(String taskId, Task task, List<String> dependencies) {
@@ -90,43 +648,222 @@ class TaskExecutor {
         if (activeTasks.containsKey(taskId)) return CompletableFuture.failedFuture(new IllegalArgumentException("Task already exists"));
 
         List<CompletableFuture<Object>> dependencyFutures = new ArrayList<>();
+        List<CancellationToken> dependencyTokens = new ArrayList<>();
         for (String depId : dependencies) {
             CompletableFuture<Object> depFuture = activeTasks.get(depId);
-            if (depFuture == null) {
+            CancellationToken depToken = taskTokens.get(depId);
+            if (depFuture == null && memo != null) {
+                // Finished memoized task: reuse its result, there is nothing left to cancel
+                depFuture = memo.completedByTaskId(depId);
+                depToken = new CancellationToken();
+            }
+            if (depFuture == null || depToken == null) {
                 return CompletableFuture.failedFuture(new IllegalArgumentException("Missing dependency: " + depId));
             }
             dependencyFutures.add(depFuture);
+            dependencyTokens.add(depToken);
+        }
+
+        // Cancelling the executor or any dependency cascades to this task
+        CancellationToken token = rootToken.child();
+
+        Object cacheKey = memo == null ? null : task.cacheKey();
+        TaskMemo.Claim claim = null;
+        if (cacheKey != null) {
+            claim = new TaskMemo.Claim(new CompletableFuture<>(), token);
+            TaskMemo.Claim existing = memo.claim(cacheKey, claim);
+            if (existing == null) {
+                CompletableFuture<Object> memoized = memo.completed(cacheKey);
+                if (memoized != null) {
+                    memo.finishHit(cacheKey, claim, memoized.join());
+                    existing = claim;
+                }
+            }
+            if (existing != null) {
+                token.detach();
+                return shareMemoized(taskId, cacheKey, existing, dependencies);
+            }
+        }
+
+        for (int i = 0; i < dependencyTokens.size(); i++) {
+            String depId = dependencies.get(i);
+            dependencyTokens.get(i).onCancel(() -> token.cancel(new CancellationException("Dependency " + depId + " cancelled")));
         }
 
-        CompletableFuture<Object> finalFuture;
+        CompletableFuture<Object> body;
         if (dependencyFutures.isEmpty()) {
-            finalFuture = task.execute().orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+            body = run(task, token);
         } else {
-            finalFuture = CompletableFuture.allOf(dependencyFutures.toArray(new CompletableFuture[0]))
+            body = CompletableFuture.allOf(dependencyFutures.toArray(new CompletableFuture[0]))
                     .thenComposeAsync(v -> {
                         List<Object> results = dependencyFutures.stream().map(CompletableFuture::join).toList();
                         if (task instanceof DependentTask dt) {
                             dt.setDependencies(results, executor);
                         }
-                        return task.execute().orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+                        return run(task, token);
                     }, executor);
         }
 
-        finalFuture.whenComplete((res, ex) -> {
-            if (ex != null) System.err.println("Task " + taskId + " failed: " + ex.getMessage());
-            else System.out.println("Task " + taskId + " completed: " + res);
-            activeTasks.remove(taskId);
+        // Completes with the body's outcome, or straight away when the token is cancelled.
+        // A cancelled body can unwind (CancellationException) before the token's own callback
+        // runs, so a failure after cancellation always reports the token's reason - a deadline
+        // fails the task with TimeoutException, as orTimeout() did.
+        CompletableFuture<Object> finalFuture = new CompletableFuture<>();
+        token.onCancel(() -> finalFuture.completeExceptionally(token.reason()));
+        body.whenComplete((res, ex) -> {
+            if (ex == null) finalFuture.complete(res);
+            else if (token.isCancelled()) finalFuture.completeExceptionally(token.reason());
+            else finalFuture.completeExceptionally(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
         });
 
+        if (claim != null) {
+            TaskMemo.Claim ours = claim;
+            memo.alias(taskId, cacheKey);
+            finalFuture.whenComplete((res, ex) -> memo.finish(cacheKey, ours, res, ex));
+        }
+
         activeTasks.put(taskId, finalFuture);
+        taskTokens.put(taskId, token);
         taskGraph.put(taskId, dependencies);
+        finalFuture.whenComplete((res, ex) -> {
+            if (ex != null) System.err.println("Task " + taskId + " failed: " + ex);
+            else System.out.println("Task " + taskId + " completed: " + res);
+            activeTasks.remove(taskId);
+            taskTokens.remove(taskId);
+            // A task that failed on its own (no cancellation) still takes its dependents down
+            if (ex != null) token.cancel(ex);
+            token.detach();
+        });
         return finalFuture;
     }
 
+    // Registers taskId as another name for an in-flight (or finished) memoized run, so
+    // dependents can list either id and the graph reuses the one node
+    private CompletableFuture<Object> shareMemoized(String taskId, Object cacheKey, TaskMemo.Claim shared,
+                                                    List<String> dependencies) {
+        memo.alias(taskId, cacheKey);
+        CompletableFuture<Object> future = shared.future();
+        if (!future.isDone()) {
+            activeTasks.putIfAbsent(taskId, future);
+            taskTokens.putIfAbsent(taskId, shared.token());
+            taskGraph.put(taskId, dependencies);
+            future.whenComplete((res, ex) -> {
+                activeTasks.remove(taskId, future);
+                taskTokens.remove(taskId, shared.token());
+            });
+        }
+        return future;
+    }
+
+    public CacheStats memoStats() {
+        return memo == null ? CacheStats.EMPTY : memo.stats();
+    }
+
+    // Cancels one task and, through its token, every task that depends on it
+    public boolean cancel(String taskId) {
+        CancellationToken token = taskTokens.get(taskId);
+        return token != null && token.cancel();
+    }
+
+    /*
+     * Batched path for large numbers of tiny, synchronous tasks. Instead of a future
+     * chain, an activeTasks entry and a timeout per task, the whole batch shares one
+     * token, one deadline and one aggregate future. The tasks are split into chunks that
+     * run on a work-stealing ForkJoinPool, each task inline via execute(Runnable::run, token).
+     * Batched tasks have no ids, can't be dependencies and don't show in activeTaskCount().
+     */
+    public CompletableFuture<List<Object>> submitAll(Collection<? extends Task> tasks) {
+        if (cancelled.get()) return CompletableFuture.failedFuture(new CancellationException("Executor cancelled"));
+        Task[] batch = tasks.toArray(new Task[0]);
+        if (batch.length == 0) return CompletableFuture.completedFuture(List.of());
+
+        CompletableFuture<List<Object>> aggregate = new CompletableFuture<>();
+        CancellationToken token = rootToken.child();
+        token.onCancel(() -> aggregate.completeExceptionally(token.reason()));
+        aggregate.whenComplete((res, ex) -> token.detach());
+        token.startDeadline(timeoutMillis);
+
+        ForkJoinPool pool = batchPool();
+        // ~8 chunks per worker: big enough to amortise the split, small enough to steal
+        int chunkSize = Math.max(1, batch.length / (pool.getParallelism() * 8));
+        Object[] results = new Object[batch.length];
+        try {
+            pool.execute(new BatchChunk(null, batch, results, 0, batch.length, chunkSize, token, aggregate));
+        } catch (RejectedExecutionException e) {
+            aggregate.completeExceptionally(e);
+        }
+        return aggregate;
+    }
+
+    private ForkJoinPool batchPool() {
+        ForkJoinPool pool = batchPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = batchPool;
+                if (pool == null) batchPool = pool = new ForkJoinPool(concurrencyLimit);
+            }
+        }
+        return pool;
+    }
+
+    // Splits [lo, hi) until it is at most chunkSize, forking the right halves. The last
+    // chunk to finish completes the root, whose onCompletion publishes the results.
+    private static final class BatchChunk extends CountedCompleter<Void> {
+        private static final long serialVersionUID = 1L;
+        private final Task[] tasks;
+        private final Object[] results;
+        private final int lo, hi, chunkSize;
+        private final CancellationToken token;
+        private final CompletableFuture<List<Object>> aggregate;
+
+        BatchChunk(BatchChunk parent, Task[] tasks, Object[] results, int lo, int hi, int chunkSize,
+                   CancellationToken token, CompletableFuture<List<Object>> aggregate) {
+            super(parent);
+            this.tasks = tasks;
+            this.results = results;
+            this.lo = lo;
+            this.hi = hi;
+            this.chunkSize = chunkSize;
+            this.token = token;
+            this.aggregate = aggregate;
+        }
+
+        @Override
+        public void compute() {
+            int end = hi;
+            while (end - lo > chunkSize) {
+                int mid = (lo + end) >>> 1;
+                addToPendingCount(1);
+                new BatchChunk(this, tasks, results, mid, end, chunkSize, token, aggregate).fork();
+                end = mid;
+            }
+            for (int i = lo; i < end && !token.isCancelled(); i++) {
+                try {
+                    results[i] = tasks[i].execute(Runnable::run, token).join();
+                } catch (RuntimeException e) {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    aggregate.completeExceptionally(token.isCancelled() ? token.reason() : cause); // deadline: TimeoutException
+                    token.cancel(cause); // stop the other chunks
+                }
+            }
+            tryComplete();
+        }
+
+        @Override
+        public void onCompletion(CountedCompleter<?> caller) {
+            // CountedCompleter completion orders every chunk's writes before the root's onCompletion
+            if (getCompleter() == null && !token.isCancelled()) {
+                aggregate.complete(Arrays.asList(results));
+            }
+        }
+    }
+
     public void cancelAll() {
         cancelled.set(true);
-        activeTasks.values().forEach(future -> future.cancel(true));
+        rootToken.cancel(new CancellationException("Executor cancelled"));
         executor.shutdownNow();
+        ForkJoinPool pool = batchPool;
+        if (pool != null) pool.shutdownNow();
     }
 }
 
@@ -143,5 +880,52 @@ public class AsyncTaskExecutor {
 
         Thread.sleep(500); // Let tasks complete - increase
         executor.cancelAll();
+
+        System.out.println("\n--- Thread-per-task mode (limit 2) ---");
+        TaskExecutor virtualExecutor = new TaskExecutor(2, 5000, ExecutionMode.VIRTUAL_THREADS);
+        CompletableFuture<Object> a = virtualExecutor.submitTask("v1", new SimpleTask("v1"), List.of());
+        CompletableFuture<Object> b = virtualExecutor.submitTask("v2", new SimpleTask("v2"), List.of());
+        CompletableFuture<Object> c = virtualExecutor.submitTask("v3", new SimpleTask("v3"), List.of()); // waits for a permit
+        CompletableFuture.allOf(a, b, c).join();
+        virtualExecutor.cancelAll();
+
+        System.out.println("\n--- Cancelling a parent cascades to its dependents ---");
+        TaskExecutor cancellable = new TaskExecutor(4, 5000);
+        cancellable.submitTask("parent", new SimpleTask("parent"), List.of());
+        cancellable.submitTask("sibling", new SimpleTask("sibling"), List.of());
+        CompletableFuture<Object> child = cancellable.submitTask("child", new DependentTask("child"), List.of("parent"));
+        Thread.sleep(200);
+        System.out.println("Launched, not finished, before cancel: " + cancellable.activeTaskCount());
+        cancellable.cancel("parent"); // interrupts parent's sleep, fails child without running it
+        System.out.println("Launched, not finished, after cancel: " + cancellable.activeTaskCount());
+        System.out.println("Child cancelled: " + child.isCompletedExceptionally());
+
+        System.out.println("\n--- Memoized duplicates run once ---");
+        cancellable.submitTask("fetch-1", new SimpleTask("fetch", "fetch:users"), List.of());
+        cancellable.submitTask("fetch-2", new SimpleTask("fetch", "fetch:users"), List.of()); // joins fetch-1's run
+        cancellable.submitTask("consume", new DependentTask("consume"), List.of("fetch-2")).join();
+        cancellable.submitTask("fetch-3", new SimpleTask("fetch", "fetch:users"), List.of())
+                .thenAccept(res -> System.out.println("Served from memo: " + res))
+                .join();
+        System.out.println("Memo stats: " + cancellable.memoStats().hitCount() + " hits, "
+                + cancellable.memoStats().missCount() + " misses");
+
+        System.out.println("\n--- Batched submission of tiny tasks ---");
+        List<Task> tiny = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            int n = i;
+            tiny.add(() -> CompletableFuture.completedFuture(n * n));
+        }
+        List<Object> squares = cancellable.submitAll(tiny).join();
+        System.out.println("Batch results: " + squares.size() + ", last = " + squares.get(squares.size() - 1));
+
+        System.out.println("\n--- Deadline interrupts running work ---");
+        TaskExecutor strict = new TaskExecutor(2, 300);
+        strict.submitTask("slow", new SimpleTask("slow"), List.of())
+                .exceptionally(ex -> "timed out: " + ex)
+                .thenAccept(System.out::println)
+                .join();
+        cancellable.cancelAll();
+        strict.cancelAll();
     }
 }
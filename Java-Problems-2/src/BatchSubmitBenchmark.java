@@ -0,0 +1,75 @@
+/*
+
+## Throughput of tiny tasks: submitTask one by one vs submitAll
+
+Each task just mixes its index (well under a microsecond). Per-task submitTask pays
+for a CompletableFuture chain, activeTasks/taskTokens entries, a cancellation token
+and a deadline timer; submitAll shares all of that across the batch.
+
+submitTask logs every completion, so stdout/stderr are swapped for a discarding
+stream while measuring - the numbers are the executor's overhead, not the console's.
+
+java -Xmx2g BatchSubmitBenchmark [tasks]
+
+* */
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class BatchSubmitBenchmark {
+
+    private static List<Task> tinyTasks(int count) {
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long seed = i;
+            tasks.add(() -> CompletableFuture.completedFuture(seed * 0x9E3779B97F4A7C15L ^ (seed >>> 7)));
+        }
+        return tasks;
+    }
+
+    private static double oneByOne(List<Task> tasks, int threads) {
+        TaskExecutor executor = new TaskExecutor(threads, 60_000);
+        long start = System.nanoTime();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[tasks.size()];
+        for (int i = 0; i < tasks.size(); i++) {
+            futures[i] = executor.submitTask("t" + i, tasks.get(i), List.of());
+        }
+        CompletableFuture.allOf(futures).join();
+        long elapsed = System.nanoTime() - start;
+        executor.cancelAll();
+        return tasks.size() * 1e9 / elapsed;
+    }
+
+    private static double batched(List<Task> tasks, int threads) {
+        TaskExecutor executor = new TaskExecutor(threads, 60_000);
+        long start = System.nanoTime();
+        executor.submitAll(tasks).join();
+        long elapsed = System.nanoTime() - start;
+        executor.cancelAll();
+        return tasks.size() * 1e9 / elapsed;
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Task> tasks = tinyTasks(count);
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+
+        out.println("Tasks: " + count + ", threads: " + threads);
+        out.printf("%-6s %18s %18s %9s%n", "round", "submitTask task/s", "submitAll task/s", "speedup");
+        for (int round = 0; round < 5; round++) { // first rounds double as warm-up
+            System.setOut(discard);
+            System.setErr(discard);
+            double single = oneByOne(tasks, threads);
+            double batch = batched(tasks, threads);
+            System.setOut(out);
+            System.setErr(err);
+            out.printf("%-6d %18.0f %18.0f %8.1fx%n", round, single, batch, batch / single);
+        }
+    }
+}
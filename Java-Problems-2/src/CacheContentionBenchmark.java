@@ -0,0 +1,83 @@
+/*
+
+## Put contention: LRUCache vs SegmentedLRUCache
+
+Every thread hammers put() with random keys drawn from a key space 4x the capacity,
+so most puts miss and trigger an eviction (the write-heavy worst case).
+LRUCache serialises all of them on one lock and one linked list; SegmentedLRUCache
+only serialises puts that hash to the same segment.
+
+Plain System.nanoTime() harness (no JMH in this project): each config gets a warm-up
+round, then a timed round of MEASURE_MILLIS. Run with e.g.
+    java -Xms1g -Xmx1g CacheContentionBenchmark [segments]
+
+* */
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+public class CacheContentionBenchmark {
+    private static final int CAPACITY = 100_000;
+    private static final int KEY_SPACE = CAPACITY * 4;
+    private static final long WARMUP_MILLIS = 500;
+    private static final long MEASURE_MILLIS = 1000;
+
+    // Runs `put` from `threads` threads for `millis` and returns puts per second
+    private static double run(int threads, long millis, BiConsumer<Integer, Integer> put) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] deadline = new long[1];
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long count = 0;
+                    while ((count & 255) != 0 || System.nanoTime() < deadline[0]) {
+                        int key = random.nextInt(KEY_SPACE);
+                        put.accept(key, key);
+                        count++;
+                    }
+                    ops.add(count);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        deadline[0] = begin + millis * 1_000_000L; // published to workers by start.countDown()
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        return ops.sum() * 1e9 / elapsed;
+    }
+
+    private static double measure(int threads, BiConsumer<Integer, Integer> put) throws InterruptedException {
+        run(threads, WARMUP_MILLIS, put);
+        return run(threads, MEASURE_MILLIS, put);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int segments = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(16, cores * 4);
+        System.out.println("Cores: " + cores + ", capacity: " + CAPACITY + ", segments: " + segments);
+        System.out.printf("%-8s %18s %18s %9s%n", "threads", "LRUCache put/s", "Segmented put/s", "speedup");
+
+        for (int threads = 1; threads <= cores * 2; threads *= 2) {
+            // Fresh caches per row so earlier rows don't leave a warm, full cache behind
+            LRUCache<Integer, Integer> global = new LRUCache<>(CAPACITY, StatsCounter.disabled());
+            SegmentedLRUCache<Integer, Integer> segmented =
+                    new SegmentedLRUCache<>(CAPACITY, segments, StatsCounter.disabled());
+
+            double globalOps = measure(threads, global::put);
+            double segmentedOps = measure(threads, segmented::put);
+            System.out.printf("%-8d %18.0f %18.0f %8.2fx%n", threads, globalOps, segmentedOps, segmentedOps / globalOps);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+
+## Counter primitives: increment throughput and accurate-read latency
+
+increments/s for 1 .. 32 threads, every thread incrementing in a tight loop:
+* customLock   : AtomicOps' shape (customLock around AtomicInteger), now with backoff
+* AtomicLong   : one CAS'd cache line
+* Striped      : StripedCounter (base + padded cells)
+* LongAdder    : the JDK original, for reference
+* PerThread    : PerThreadCounter (own padded slot, lazySet)
+
+read latency: 8 writer threads keep incrementing while one reader takes an accurate
+total (lock + get, get, sum(), sum(), sum()) every ~20 us; p50 / p99 per read.
+
+Plain System.nanoTime() harness (no JMH in this project): warm-up round, then a timed
+round of MEASURE_MILLIS per cell.
+    java CounterBenchmark [maxThreads]
+
+* */
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+public class CounterBenchmark {
+    private static final long WARMUP_MILLIS = 300;
+    private static final long MEASURE_MILLIS = 1000;
+    private static final int READ_SAMPLES = 20_000;
+
+    // a counter under test: how to increment it, how to read it accurately
+    private record Counter(String name, Runnable increment, LongSupplier read) {
+    }
+
+    private static Counter[] counters() {
+        customLock lock = new customLock();
+        AtomicInteger locked = new AtomicInteger();
+        AtomicLong atomic = new AtomicLong();
+        StripedCounter striped = new StripedCounter();
+        LongAdder adder = new LongAdder();
+        PerThreadCounter perThread = new PerThreadCounter(1, TimeUnit.MILLISECONDS);
+        return new Counter[]{
+                new Counter("customLock", () -> {
+                    lock.lock();
+                    try {
+                        locked.incrementAndGet();
+                    } finally {
+                        lock.unlock();
+                    }
+                }, () -> {
+                    lock.lock();
+                    try {
+                        return locked.get();
+                    } finally {
+                        lock.unlock();
+                    }
+                }),
+                new Counter("AtomicLong", atomic::incrementAndGet, atomic::get),
+                new Counter("Striped", striped::increment, striped::sum),
+                new Counter("LongAdder", adder::increment, adder::sum),
+                new Counter("PerThread", perThread::increment, perThread::sum),
+        };
+    }
+
+    // Runs `threads` incrementing threads for `millis`; if reads != null a reader samples read latency meanwhile
+    private static double run(Counter counter, int threads, long millis, long[] reads) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] deadline = new long[1];
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    long count = 0;
+                    while ((count & 1023) != 0 || System.nanoTime() < deadline[0]) {
+                        counter.increment().run();
+                        count++;
+                    }
+                    ops.add(count);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        deadline[0] = begin + TimeUnit.MILLISECONDS.toNanos(millis); // published to workers by start.countDown()
+        start.countDown();
+        if (reads != null) {
+            for (int i = 0; i < reads.length && System.nanoTime() < deadline[0]; i++) {
+                long before = System.nanoTime();
+                counter.read().getAsLong();
+                reads[i] = System.nanoTime() - before;
+                LockSupport.parkNanos(20_000);
+            }
+        }
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        return ops.sum() * 1e9 / elapsed;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        System.out.println("Cores: " + Runtime.getRuntime().availableProcessors() + ", " + MEASURE_MILLIS + " ms per cell");
+
+        System.out.printf("%-8s", "threads");
+        for (Counter counter : counters()) System.out.printf(" %16s", counter.name() + "/s");
+        System.out.println();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            System.out.printf("%-8d", threads);
+            for (Counter counter : counters()) { // fresh counters per row
+                run(counter, threads, WARMUP_MILLIS, null);
+                System.out.printf(" %,16.0f", run(counter, threads, MEASURE_MILLIS, null));
+            }
+            System.out.println();
+        }
+
+        System.out.println("accurate read while 8 threads increment");
+        for (Counter counter : counters()) {
+            long[] reads = new long[READ_SAMPLES];
+            Arrays.fill(reads, -1);
+            run(counter, 8, MEASURE_MILLIS, reads);
+            long[] taken = Arrays.stream(reads).filter(r -> r >= 0).sorted().toArray();
+            System.out.printf("  %-12s p50 %8.2f us  p99 %9.2f us  (%,d reads)%n", counter.name(),
+                    taken[taken.length / 2] / 1e3, taken[(int) (taken.length * 0.99)] / 1e3, taken.length);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+
+## Makespan: submit-time chaining vs DagScheduler (FIFO vs critical-path)
+
+Synthetic layered DAGs: LAYERS x WIDTH nodes (12k by default), each node depends on
+1-3 random nodes of the previous layer. Most nodes are cheap, a few are heavy, so the
+order in which ready nodes are picked decides how long the heavy chains wait.
+
+1. chained      - what TaskExecutor.submitTask does: allOf(deps).thenComposeAsync(join...) per node
+2. dag-fifo     - DagScheduler, ready nodes in FIFO order
+3. dag-critical - DagScheduler, ready nodes by longest remaining path
+
+Every node busy-spins for its cost so results don't depend on sleep granularity.
+Run with e.g.  java DagSchedulerBenchmark [threads] [layers] [width]
+
+* */
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class DagSchedulerBenchmark {
+    private static final long CHEAP_MICROS = 20;
+    private static final long HEAVY_MICROS = 500;
+    private static final double HEAVY_FRACTION = 0.05;
+    private static final int ROUNDS = 3;
+
+    record SyntheticNode(String id, long costMicros, List<String> dependencies) {}
+
+    static List<SyntheticNode> generate(int layers, int width, long seed) {
+        Random random = new Random(seed);
+        List<SyntheticNode> nodes = new ArrayList<>(layers * width);
+        for (int layer = 0; layer < layers; layer++) {
+            for (int i = 0; i < width; i++) {
+                List<String> deps = new ArrayList<>();
+                if (layer > 0) {
+                    int fanIn = 1 + random.nextInt(3);
+                    for (int d = 0; d < fanIn; d++) {
+                        String dep = "n" + (layer - 1) + "_" + random.nextInt(width);
+                        if (!deps.contains(dep)) deps.add(dep);
+                    }
+                }
+                long cost = random.nextDouble() < HEAVY_FRACTION ? HEAVY_MICROS : CHEAP_MICROS;
+                nodes.add(new SyntheticNode("n" + layer + "_" + i, cost, deps));
+            }
+        }
+        return nodes;
+    }
+
+    static Object spin(long micros) {
+        long end = System.nanoTime() + micros * 1000;
+        long x = 0;
+        while (System.nanoTime() < end) x++;
+        return x;
+    }
+
+    // Spins on the executor it is handed, like SimpleTask - the body never runs on the common pool
+    static Task task(SyntheticNode node) {
+        return new Task() {
+            @Override
+            public CompletableFuture<Object> execute() {
+                return execute(ForkJoinPool.commonPool());
+            }
+
+            @Override
+            public CompletableFuture<Object> execute(Executor executor) {
+                return CompletableFuture.supplyAsync(() -> spin(node.costMicros()), executor);
+            }
+        };
+    }
+
+    // Same wiring as TaskExecutor.submitTask, minus the logging
+    static long runChained(List<SyntheticNode> nodes, int threads) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        Map<String, CompletableFuture<Object>> futures = new HashMap<>();
+        for (SyntheticNode node : nodes) {
+            Task task = task(node);
+            CompletableFuture<Object> future;
+            if (node.dependencies().isEmpty()) {
+                future = CompletableFuture.supplyAsync(() -> null, pool).thenCompose(v -> task.execute(pool));
+            } else {
+                List<CompletableFuture<Object>> deps = node.dependencies().stream().map(futures::get).toList();
+                future = CompletableFuture.allOf(deps.toArray(new CompletableFuture<?>[0]))
+                        .thenComposeAsync(v -> {
+                            deps.stream().map(CompletableFuture::join).toList();
+                            return task.execute(pool);
+                        }, pool);
+            }
+            futures.put(node.id(), future);
+        }
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0])).join();
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        return elapsed;
+    }
+
+    static long runDag(List<SyntheticNode> nodes, int threads, boolean criticalPathFirst) {
+        DagScheduler scheduler = new DagScheduler(threads, 60_000, criticalPathFirst);
+        long start = System.nanoTime();
+        TaskGraph graph = new TaskGraph();
+        for (SyntheticNode node : nodes) {
+            graph.addTask(node.id(), task(node), node.dependencies(), node.costMicros());
+        }
+        scheduler.execute(graph).join();
+        long elapsed = System.nanoTime() - start;
+        scheduler.shutdown();
+        return elapsed;
+    }
+
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int layers = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+        int width = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+        List<SyntheticNode> nodes = generate(layers, width, 42);
+        long totalWork = nodes.stream().mapToLong(SyntheticNode::costMicros).sum();
+        System.out.printf("Nodes: %d, threads: %d, total work: %d ms, ideal makespan: %d ms%n",
+                nodes.size(), threads, totalWork / 1000, totalWork / 1000 / threads);
+
+        runChained(nodes, threads); // warm-up
+        runDag(nodes, threads, true);
+        System.out.printf("%-14s %12s%n", "strategy", "makespan ms");
+        for (int round = 0; round < ROUNDS; round++) {
+            System.out.printf("%-14s %12.1f%n", "chained", runChained(nodes, threads) / 1e6);
+            System.out.printf("%-14s %12.1f%n", "dag-fifo", runDag(nodes, threads, false) / 1e6);
+            System.out.printf("%-14s %12.1f%n", "dag-critical", runDag(nodes, threads, true) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/*
+
+## DAG Scheduler for Task graphs (critical-path first)
+
+TaskExecutor.submitTask wires dependencies one submit at a time: the dependent
+parks a pool thread on CompletableFuture::join and ready tasks run in FIFO order.
+
+DagScheduler instead takes the whole graph upfront:
+1. Validate it - unknown dependencies and cycles are rejected before anything runs
+2. Compute each task's priority as the longest (cost-weighted) path from it to an exit task
+3. Keep ready tasks in a priority queue, dispatch at most `concurrencyLimit` of them,
+   highest priority (i.e. on the critical path) first
+4. When a task completes, decrement its dependents' pending counters; the one that hits
+   zero becomes ready. Nobody ever waits on join().
+
+
+class TaskGraph {
+        - nodes: Map<String, TaskNode>
+        + addTask(id, task, dependencies): TaskGraph
+        + addTask(id, task, dependencies, estimatedCost): TaskGraph
+    }
+
+class DagScheduler {
+        - executor: ExecutorService
+        - concurrencyLimit: int
+        - timeoutMillis: long
+        - criticalPathFirst: boolean
+        + execute(graph: TaskGraph): CompletableFuture<Map<String, Object>>
+        + shutdown(): void
+    }
+
+* */
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+class TaskGraph {
+    static final class TaskNode {
+        final String id;
+        final Task task;
+        final List<String> dependencies;
+        final long estimatedCost;
+
+        TaskNode(String id, Task task, List<String> dependencies, long estimatedCost) {
+            this.id = id;
+            this.task = task;
+            this.dependencies = dependencies;
+            this.estimatedCost = estimatedCost;
+        }
+    }
+
+    private final Map<String, TaskNode> nodes = new LinkedHashMap<>();
+
+    public TaskGraph addTask(String id, Task task, List<String> dependencies) {
+        return addTask(id, task, dependencies, 1);
+    }
+
+    // estimatedCost is only used for priorities (any unit, e.g. expected millis)
+    public TaskGraph addTask(String id, Task task, List<String> dependencies, long estimatedCost) {
+        if (nodes.containsKey(id)) throw new IllegalArgumentException("Task already exists: " + id);
+        if (estimatedCost < 0) throw new IllegalArgumentException("Negative cost for task: " + id);
+        nodes.put(id, new TaskNode(id, task, List.copyOf(dependencies), estimatedCost));
+        return this;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    Collection<TaskNode> nodes() {
+        return nodes.values();
+    }
+}
+
+class DagScheduler {
+    private final ExecutorService executor;
+    private final int concurrencyLimit;
+    private final long timeoutMillis;
+    private final boolean criticalPathFirst;
+
+    public DagScheduler(int concurrencyLimit, long timeoutMillis) {
+        this(concurrencyLimit, timeoutMillis, true);
+    }
+
+    // criticalPathFirst = false dispatches ready tasks FIFO, kept for comparison
+    public DagScheduler(int concurrencyLimit, long timeoutMillis, boolean criticalPathFirst) {
+        this.executor = Executors.newFixedThreadPool(concurrencyLimit);
+        this.concurrencyLimit = concurrencyLimit;
+        this.timeoutMillis = timeoutMillis;
+        this.criticalPathFirst = criticalPathFirst;
+    }
+
+    public CompletableFuture<Map<String, Object>> execute(TaskGraph graph) {
+        Plan plan;
+        try {
+            plan = new Plan(graph);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        Run run = new Run(plan);
+        run.start();
+        return run.result;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // Immutable, index-based view of a validated graph
+    private static final class Plan {
+        final TaskGraph.TaskNode[] nodes;
+        final int[][] dependencies;   // node -> the nodes it waits for
+        final int[][] dependents;     // node -> the nodes waiting for it
+        final long[] priority;        // longest cost-weighted path from node to an exit
+
+        Plan(TaskGraph graph) {
+            int n = graph.size();
+            nodes = graph.nodes().toArray(new TaskGraph.TaskNode[0]);
+            Map<String, Integer> index = new HashMap<>(n * 2);
+            for (int i = 0; i < n; i++) index.put(nodes[i].id, i);
+
+            dependencies = new int[n][];
+            int[] dependentCount = new int[n];
+            for (int i = 0; i < n; i++) {
+                List<String> deps = nodes[i].dependencies;
+                dependencies[i] = new int[deps.size()];
+                for (int d = 0; d < deps.size(); d++) {
+                    Integer depIndex = index.get(deps.get(d));
+                    if (depIndex == null) {
+                        throw new IllegalArgumentException("Missing dependency: " + deps.get(d) + " (of " + nodes[i].id + ")");
+                    }
+                    dependencies[i][d] = depIndex;
+                    dependentCount[depIndex]++;
+                }
+            }
+            dependents = new int[n][];
+            for (int i = 0; i < n; i++) dependents[i] = new int[dependentCount[i]];
+            int[] fill = new int[n];
+            for (int i = 0; i < n; i++) {
+                for (int dep : dependencies[i]) dependents[dep][fill[dep]++] = i;
+            }
+
+            // Kahn's algorithm: anything left unprocessed sits on (or behind) a cycle
+            int[] order = new int[n];
+            int[] indegree = new int[n];
+            int head = 0, tail = 0;
+            for (int i = 0; i < n; i++) {
+                indegree[i] = dependencies[i].length;
+                if (indegree[i] == 0) order[tail++] = i;
+            }
+            while (head < tail) {
+                int node = order[head++];
+                for (int next : dependents[node]) {
+                    if (--indegree[next] == 0) order[tail++] = next;
+                }
+            }
+            if (tail < n) throw new IllegalArgumentException("Dependency cycle: " + findCycle(indegree));
+
+            // Reverse topological order: every dependent is ranked before the node itself
+            priority = new long[n];
+            for (int k = n - 1; k >= 0; k--) {
+                int node = order[k];
+                long longestTail = 0;
+                for (int next : dependents[node]) longestTail = Math.max(longestTail, priority[next]);
+                priority[node] = nodes[node].estimatedCost + longestTail;
+            }
+        }
+
+        // Every node still holding indegree > 0 has a dependency that does too, so
+        // following those dependencies must eventually revisit a node.
+        private String findCycle(int[] indegree) {
+            int start = 0;
+            while (indegree[start] == 0) start++;
+            Map<Integer, Integer> seenAt = new HashMap<>();
+            List<Integer> path = new ArrayList<>();
+            int node = start;
+            while (!seenAt.containsKey(node)) {
+                seenAt.put(node, path.size());
+                path.add(node);
+                for (int dep : dependencies[node]) {
+                    if (indegree[dep] > 0) {
+                        node = dep;
+                        break;
+                    }
+                }
+            }
+            StringJoiner cycle = new StringJoiner(" <- ");
+            for (int i = seenAt.get(node); i < path.size(); i++) cycle.add(nodes[path.get(i)].id);
+            return cycle.add(nodes[node].id).toString();
+        }
+    }
+
+    // State of one execute() call
+    private final class Run {
+        final Plan plan;
+        final CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        final Object[] results;
+        final AtomicIntegerArray pendingDependencies;
+        final AtomicInteger remaining;
+        final long[] readySequence;
+        // guarded by `this`
+        final PriorityQueue<Integer> ready;
+        long nextSequence;
+        int inFlight;
+
+        Run(Plan plan) {
+            this.plan = plan;
+            int n = plan.nodes.length;
+            this.results = new Object[n];
+            this.pendingDependencies = new AtomicIntegerArray(n);
+            this.remaining = new AtomicInteger(n);
+            this.readySequence = new long[n];
+            for (int i = 0; i < n; i++) pendingDependencies.set(i, plan.dependencies[i].length);
+            Comparator<Integer> fifo = Comparator.comparingLong(i -> readySequence[i]);
+            this.ready = new PriorityQueue<>(criticalPathFirst
+                    ? Comparator.<Integer>comparingLong(i -> -plan.priority[i]).thenComparing(fifo)
+                    : fifo);
+        }
+
+        void start() {
+            if (plan.nodes.length == 0) {
+                result.complete(Map.of());
+                return;
+            }
+            synchronized (this) {
+                for (int i = 0; i < plan.nodes.length; i++) {
+                    if (plan.dependencies[i].length == 0) markReady(i);
+                }
+            }
+            dispatch();
+        }
+
+        // caller holds the lock
+        private void markReady(int node) {
+            readySequence[node] = nextSequence++;
+            ready.add(node);
+        }
+
+        private void dispatch() {
+            List<Integer> toStart = new ArrayList<>();
+            synchronized (this) {
+                while (!result.isDone() && inFlight < concurrencyLimit && !ready.isEmpty()) {
+                    toStart.add(ready.poll());
+                    inFlight++;
+                }
+            }
+            for (int node : toStart) {
+                try {
+                    executor.execute(() -> runNode(node));
+                } catch (RejectedExecutionException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        }
+
+        private void runNode(int node) {
+            TaskGraph.TaskNode taskNode = plan.nodes[node];
+            CompletableFuture<Object> future;
+            try {
+                if (taskNode.task instanceof DependentTask dt) {
+                    // Dependencies are already complete, their results are just read
+                    List<Object> dependencyResults = new ArrayList<>(plan.dependencies[node].length);
+                    for (int dep : plan.dependencies[node]) dependencyResults.add(results[dep]);
+                    dt.setDependencies(dependencyResults, executor);
+                }
+                future = taskNode.task.execute(executor).orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((res, ex) -> onComplete(node, res, ex));
+        }
+
+        private void onComplete(int node, Object res, Throwable ex) {
+            if (ex != null) {
+                result.completeExceptionally(new CompletionException("Task " + plan.nodes[node].id + " failed", ex));
+            } else {
+                results[node] = res;
+                synchronized (this) {
+                    for (int next : plan.dependents[node]) {
+                        if (pendingDependencies.decrementAndGet(next) == 0) markReady(next);
+                    }
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    Map<String, Object> byId = new LinkedHashMap<>();
+                    for (int i = 0; i < plan.nodes.length; i++) byId.put(plan.nodes[i].id, results[i]);
+                    result.complete(byId);
+                }
+            }
+            synchronized (this) {
+                inFlight--;
+            }
+            dispatch();
+        }
+    }
+}
+
+public class DagTaskScheduler {
+    public static void main(String[] args) {
+        DagScheduler scheduler = new DagScheduler(4, 3000);
+
+        //   task1 --> task3 --> task5
+        //   task2 --/      \--> task4
+        TaskGraph graph = new TaskGraph()
+                .addTask("task1", new SimpleTask("task1"), List.of())
+                .addTask("task2", new SimpleTask("task2"), List.of())
+                .addTask("task3", new DependentTask("task3"), List.of("task1", "task2"))
+                .addTask("task4", new DependentTask("task4"), List.of("task3"))
+                .addTask("task5", new DependentTask("task5"), List.of("task3"), 5);
+
+        System.out.println("--- Executing DAG ---");
+        Map<String, Object> results = scheduler.execute(graph).join();
+        results.forEach((id, res) -> System.out.println(id + " -> " + res));
+
+        System.out.println("\n--- Cycle Detection ---");
+        TaskGraph cyclic = new TaskGraph()
+                .addTask("a", new SimpleTask("a"), List.of("c"))
+                .addTask("b", new SimpleTask("b"), List.of("a"))
+                .addTask("c", new SimpleTask("c"), List.of("b"));
+        scheduler.execute(cyclic)
+                .exceptionally(ex -> {
+                    System.out.println("Rejected: " + ex.getMessage());
+                    return null;
+                })
+                .join();
+
+        scheduler.shutdown();
+    }
+}
@@ -23,16 +23,17 @@ class LRUCache<K, V> {
         - head: Node<K, V> (dummy, MRU)
         - tail: Node<K, V> (dummy, LRU)
         - lock: ReentrantLock
-        - hits: AtomicLong
-        - misses: AtomicLong
-        - evictions: AtomicLong
+        - stats: StatsCounter
         + LRUCache(capacity: int)
+        + LRUCache(capacity: int, stats: StatsCounter)
         + get(key: K): V
+        + get(key: K, loader: Function<K, V>): V
         + put(key: K, value: V): void
         + remove(key: K): void
         + getHits(): long
         + getMisses(): long
         + getEvictions(): long
+        + stats(): CacheStats
     }
 
     class Node<K, V> {
@@ -46,18 +47,27 @@ class LRUCache<K, V> {
     LRUCache "1" *-- "0..*" Node : contains
     LRUCache --> ConcurrentHashMap : uses
     LRUCache --> ReentrantLock : uses
-    LRUCache --> AtomicLong : uses
+    LRUCache --> StatsCounter : records to
+    StatsCounter <|.. ConcurrentStatsCounter : LongAdder based
+    StatsCounter <|.. DisabledStatsCounter : no-op
     Node "1" <--> "1" Node : prev/next
 
 
 * */
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 class Node<K,V>{
     private K key;
@@ -79,18 +89,196 @@ class Node<K,V>{
     public void setNext(Node<K, V> next) { this.next = next; }
 }
 
+// Why an entry left the cache. LRUCache only produces SIZE and EXPLICIT,
+// WEIGHT and EXPIRY are there for weighted / TTL caches sharing the same recorder.
+enum RemovalCause { SIZE, WEIGHT, EXPIRY, EXPLICIT }
+
+// Hits and misses that fell into one time window
+record WindowStats(long windowStartMillis, long hitCount, long missCount) {
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+}
+
+// Immutable point-in-time copy of the counters, safe to hand out to any thread
+record CacheStats(long hitCount, long missCount,
+                  long loadSuccessCount, long loadFailureCount, long totalLoadTimeNanos,
+                  Map<RemovalCause, Long> evictionsByCause, List<WindowStats> windows) {
+
+    static final CacheStats EMPTY = new CacheStats(0, 0, 0, 0, 0, Map.of(), List.of());
+
+    CacheStats {
+        Map<RemovalCause, Long> copy = new EnumMap<>(RemovalCause.class);
+        copy.putAll(evictionsByCause);
+        evictionsByCause = Collections.unmodifiableMap(copy);
+        windows = List.copyOf(windows);
+    }
+
+    public double hitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    // Policy evictions only; explicit remove() calls are reported under EXPLICIT
+    public long evictionCount() {
+        return evictionsByCause.entrySet().stream()
+                .filter(e -> e.getKey() != RemovalCause.EXPLICIT)
+                .mapToLong(Map.Entry::getValue)
+                .sum();
+    }
+
+    public long evictionCount(RemovalCause cause) {
+        return evictionsByCause.getOrDefault(cause, 0L);
+    }
+
+    public double averageLoadPenaltyNanos() {
+        long loads = loadSuccessCount + loadFailureCount;
+        return loads == 0 ? 0.0 : (double) totalLoadTimeNanos / loads;
+    }
+}
+
+interface StatsCounter {
+    void recordHit();
+    void recordMiss();
+    void recordLoadSuccess(long loadTimeNanos);
+    void recordLoadFailure(long loadTimeNanos);
+    void recordEviction(RemovalCause cause);
+    CacheStats snapshot();
+
+    default boolean isEnabled() { return true; }
+
+    // Shared no-op recorder: every call is an empty method the JIT inlines away
+    static StatsCounter disabled() { return DisabledStatsCounter.INSTANCE; }
+}
+
+enum DisabledStatsCounter implements StatsCounter {
+    INSTANCE;
+
+    @Override public void recordHit() {}
+    @Override public void recordMiss() {}
+    @Override public void recordLoadSuccess(long loadTimeNanos) {}
+    @Override public void recordLoadFailure(long loadTimeNanos) {}
+    @Override public void recordEviction(RemovalCause cause) {}
+    @Override public CacheStats snapshot() { return CacheStats.EMPTY; }
+    @Override public boolean isEnabled() { return false; }
+}
+
+// LongAdder spreads concurrent increments over striped cells, so reader threads
+// recording hits no longer fight over the one cache line an AtomicLong lives on.
+class ConcurrentStatsCounter implements StatsCounter {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder[] evictions = new LongAdder[RemovalCause.values().length];
+    private final long windowMillis;
+    private final Window[] windows;
+
+    // Ring slot; reused once the clock moves a full ring past it
+    private static final class Window {
+        volatile long startMillis = -1;
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+    }
+
+    public ConcurrentStatsCounter() {
+        this(1000, 60); // last minute, one-second resolution
+    }
+
+    public ConcurrentStatsCounter(long windowMillis, int windowCount) {
+        if (windowMillis <= 0 || windowCount <= 0) {
+            throw new IllegalArgumentException("windowMillis and windowCount must be positive");
+        }
+        this.windowMillis = windowMillis;
+        this.windows = new Window[windowCount];
+        for (int i = 0; i < windowCount; i++) windows[i] = new Window();
+        for (int i = 0; i < evictions.length; i++) evictions[i] = new LongAdder();
+    }
+
+    private Window currentWindow() {
+        long now = System.currentTimeMillis();
+        long start = now - (now % windowMillis);
+        Window window = windows[(int) ((start / windowMillis) % windows.length)];
+        if (window.startMillis != start) {
+            synchronized (window) {
+                if (window.startMillis != start) {
+                    // Counts racing with the roll-over may land in either window; that's fine for rates
+                    window.hits.reset();
+                    window.misses.reset();
+                    window.startMillis = start;
+                }
+            }
+        }
+        return window;
+    }
+
+    @Override
+    public void recordHit() {
+        hits.increment();
+        currentWindow().hits.increment();
+    }
+
+    @Override
+    public void recordMiss() {
+        misses.increment();
+        currentWindow().misses.increment();
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTimeNanos) {
+        loadSuccesses.increment();
+        totalLoadTime.add(loadTimeNanos);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTimeNanos) {
+        loadFailures.increment();
+        totalLoadTime.add(loadTimeNanos);
+    }
+
+    @Override
+    public void recordEviction(RemovalCause cause) {
+        evictions[cause.ordinal()].increment();
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        Map<RemovalCause, Long> byCause = new EnumMap<>(RemovalCause.class);
+        for (RemovalCause cause : RemovalCause.values()) {
+            byCause.put(cause, evictions[cause.ordinal()].sum());
+        }
+        long oldest = System.currentTimeMillis() - windowMillis * windows.length;
+        List<WindowStats> recent = new ArrayList<>();
+        for (Window window : windows) {
+            long start = window.startMillis;
+            if (start >= 0 && start > oldest) {
+                recent.add(new WindowStats(start, window.hits.sum(), window.misses.sum()));
+            }
+        }
+        recent.sort(Comparator.comparingLong(WindowStats::windowStartMillis));
+        return new CacheStats(hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(),
+                totalLoadTime.sum(), byCause, recent);
+    }
+}
+
 class LRUCache<K,V>{
     private int capacity;
     private ConcurrentHashMap<K, Node<K, V>> cacheMap;
     protected Node<K, V> head;
     protected Node<K, V> tail;
     ReentrantLock lock = new ReentrantLock();
-    AtomicLong hits = new AtomicLong(0);
-    AtomicLong misses = new AtomicLong(0);
-    AtomicLong evictions = new AtomicLong(0);
+    private final StatsCounter stats;
 
     public LRUCache(int capacity){
+        this(capacity, new ConcurrentStatsCounter());
+    }
+
+    // Pass StatsCounter.disabled() to turn recording off entirely
+    public LRUCache(int capacity, StatsCounter stats){
         this.capacity = capacity;
+        this.stats = stats;
         this.cacheMap = new ConcurrentHashMap<>(capacity);
         this.head = new Node<>(null, null); // Using no-arg constructor now
         this.tail = new Node<>(null, null); // Using no-arg constructor now
@@ -128,21 +316,45 @@ class LRUCache<K,V>{
 
 
     public V get(K key){
+        V value = null;
+        boolean hit = false;
         lock.lock();
         try {
             Node<K, V> node = cacheMap.get(key);
-            if (node == null) {
-                misses.incrementAndGet();
-                return null;
+            if (node != null) {
+                hit = true;
+                // Move the accessed node to the head (MRU position)
+                removeNode(node); // Remove from its current position
+                addNode(node);    // Add to the head
+                value = node.getValue();
             }
-            hits.incrementAndGet();
-            // Move the accessed node to the head (MRU position)
-            removeNode(node); // Remove from its current position
-            addNode(node);    // Add to the head
-            return node.getValue();
         } finally {
             lock.unlock();
         }
+        // Record outside the lock, the critical section stays list-only
+        if (hit) stats.recordHit();
+        else stats.recordMiss();
+        return value;
+    }
+
+    // Read-through: on a miss the loader runs outside the lock and its result is cached
+    public V get(K key, Function<? super K, ? extends V> loader){
+        V value = get(key);
+        if (value != null) return value;
+        long start = stats.isEnabled() ? System.nanoTime() : 0L;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException e) {
+            if (stats.isEnabled()) stats.recordLoadFailure(System.nanoTime() - start);
+            throw e;
+        }
+        if (stats.isEnabled()) {
+            long elapsed = System.nanoTime() - start;
+            if (value == null) stats.recordLoadFailure(elapsed);
+            else stats.recordLoadSuccess(elapsed);
+        }
+        if (value != null) put(key, value);
+        return value;
     }
     public void put(K key,V value){
         lock.lock();
@@ -158,7 +370,7 @@ class LRUCache<K,V>{
                 if (cacheMap.size() >= capacity) { // Cache is full, evict LRU
                     Node<K, V> lruNode = removeLRU(); // Correctly call the helper method
                     cacheMap.remove(lruNode.getKey());
-                    evictions.incrementAndGet();
+                    stats.recordEviction(RemovalCause.SIZE);
                 }
                 Node<K, V> newNode = new Node<>(key, value);
                 cacheMap.put(key, newNode);
@@ -169,45 +381,103 @@ class LRUCache<K,V>{
         }
     }
     public void remove(K key){
+        remove(key, RemovalCause.EXPLICIT);
+    }
+
+    // For owners that apply their own policy on top (e.g. a TTL checked on read)
+    void remove(K key, RemovalCause cause){
         lock.lock();
         try {
             Node<K, V> nodeToRemove = cacheMap.remove(key);
             if (nodeToRemove != null) {
                 removeNode(nodeToRemove); // Correctly call the helper method
+                stats.recordEviction(cause);
             }
         } finally {
             lock.unlock();
         }
     }
 
-    public long getHits() { // Return long, not AtomicLong object
-        return hits.get();
+    public long getHits() {
+        return stats.snapshot().hitCount();
     }
 
-    public long getMisses() { // Return long, not AtomicLong object
-        return misses.get();
+    public long getMisses() {
+        return stats.snapshot().missCount();
     }
 
-    public long getEvictions() { // Return long, not AtomicLong object
-        return evictions.get();
+    public long getEvictions() {
+        return stats.snapshot().evictionCount();
     }
-    public void printCacheState() {
-        lock.lock();
-        try {
-            System.out.print("Cache State (MRU -> LRU): [");
-            Node<K, V> current = head.getNext();
-            while (current != tail) {
-                System.out.print(current.getKey() + ":" + current.getValue());
-                current = current.getNext();
-                if (current != tail) {
-                    System.out.print(", ");
-                }
-            }
-            System.out.println("]");
-        } finally {
-            lock.unlock();
+
+    public int size() {
+        return cacheMap.size();
+    }
+
+    // Lock-free: reads only the recorder, never walks the list
+    public CacheStats stats() {
+        return stats.snapshot();
+    }
+
+    public void printCacheStats() {
+        CacheStats snapshot = stats.snapshot();
+        System.out.printf("Cache Stats: size=%d, hits=%d, misses=%d, hitRate=%.2f, evictions=%s%n",
+                size(), snapshot.hitCount(), snapshot.missCount(), snapshot.hitRate(), snapshot.evictionsByCause());
+    }
+}
+
+
+// Write-heavy variant: keys are hashed to independent LRUCache segments, each with its
+// own lock, map, list and a share of the capacity. Puts on different segments never
+// contend, at the cost of LRU order (and eviction) being per-segment, i.e. approximate.
+class SegmentedLRUCache<K, V> {
+    private final LRUCache<K, V>[] segments;
+    private final StatsCounter stats;
+
+    public SegmentedLRUCache(int capacity, int segmentCount) {
+        this(capacity, segmentCount, new ConcurrentStatsCounter());
+    }
+
+    @SuppressWarnings("unchecked")
+    public SegmentedLRUCache(int capacity, int segmentCount, StatsCounter stats) {
+        if (segmentCount <= 0 || capacity < segmentCount) {
+            throw new IllegalArgumentException("Need 0 < segmentCount <= capacity");
         }
+        this.stats = stats;
+        this.segments = (LRUCache<K, V>[]) new LRUCache<?, ?>[segmentCount];
+        int share = capacity / segmentCount;
+        int remainder = capacity % segmentCount;
+        for (int i = 0; i < segmentCount; i++) {
+            // All segments record into the one LongAdder-based counter
+            segments[i] = new LRUCache<>(share + (i < remainder ? 1 : 0), stats);
+        }
+    }
+
+    private LRUCache<K, V> segmentFor(K key) {
+        // Pick the segment from the high bits of a scrambled hash. Using the low bits
+        // (hash % n) would leave every key in a segment sharing the same low bits, and
+        // those are exactly the bits the segment's ConcurrentHashMap indexes buckets by.
+        int mixed = key.hashCode() * 0x9E3779B9;
+        return segments[(int) (((mixed & 0xFFFFFFFFL) * segments.length) >>> 32)];
     }
+
+    public V get(K key) { return segmentFor(key).get(key); }
+
+    public V get(K key, Function<? super K, ? extends V> loader) { return segmentFor(key).get(key, loader); }
+
+    public void put(K key, V value) { segmentFor(key).put(key, value); }
+
+    public void remove(K key) { segmentFor(key).remove(key); }
+
+    public int size() {
+        int size = 0;
+        for (LRUCache<K, V> segment : segments) size += segment.size();
+        return size;
+    }
+
+    public int segmentCount() { return segments.length; }
+
+    public CacheStats stats() { return stats.snapshot(); }
 }
 
 
@@ -220,49 +490,64 @@ public class GenericCacheLRU {
 
         System.out.println("\n--- Initial Puts ---");
         cache.put("key1", "value1"); // Cache: [key1]
-        cache.printCacheState();
+        cache.printCacheStats();
         cache.put("key2", "value2"); // Cache: [key2, key1]
-        cache.printCacheState();
+        cache.printCacheStats();
         cache.put("key3", "value3"); // Cache: [key3, key2, key1]
-        cache.printCacheState();
+        cache.printCacheStats();
 
         System.out.println("\n--- Get Operations ---");
         System.out.println("Get key2: " + cache.get("key2")); // Hit, key2 becomes MRU. Cache: [key2, key3, key1]
-        cache.printCacheState();
+        cache.printCacheStats();
         System.out.println("Get key1: " + cache.get("key1")); // Hit, key1 becomes MRU. Cache: [key1, key2, key3]
-        cache.printCacheState();
+        cache.printCacheStats();
         System.out.println("Get nonExistentKey: " + cache.get("nonExistentKey")); // Miss. Cache state unchanged.
-        cache.printCacheState();
+        cache.printCacheStats();
 
         System.out.println("\n--- Eviction Demonstration (Capacity 3) ---");
         // Adding a new item will evict "key3" (LRU)
         cache.put("key4", "value4"); // Evicts key3. Cache: [key4, key1, key2]
-        cache.printCacheState();
+        cache.printCacheStats();
         System.out.println("Get key3 (should be null): " + cache.get("key3")); // Miss, as key3 was evicted
-        cache.printCacheState();
+        cache.printCacheStats();
 
         System.out.println("\n--- Update Existing Item ---");
         cache.put("key1", "updatedValue1"); // Update key1, it moves to MRU. Cache: [key1, key4, key2]
-        cache.printCacheState();
+        cache.printCacheStats();
         System.out.println("Get key1 (updated): " + cache.get("key1"));
-        cache.printCacheState();
+        cache.printCacheStats();
 
         System.out.println("\n--- Remove Operation ---");
         cache.remove("key2"); // Remove key2. Cache: [key1, key4]
-        cache.printCacheState();
+        cache.printCacheStats();
         System.out.println("Get key2 (should be null): " + cache.get("key2")); // Miss
-        cache.printCacheState();
+        cache.printCacheStats();
 
         cache.put("key5", "value5"); // Cache: [key5, key1, key4]
-        cache.printCacheState();
+        cache.printCacheStats();
         cache.put("key6", "value6"); // Evicts key4. Cache: [key6, key5, key1]
-        cache.printCacheState();
+        cache.printCacheStats();
 
         System.out.println("\n--- Final Statistics ---");
         System.out.println("Hits: " + cache.getHits());
         System.out.println("Misses: " + cache.getMisses());
         System.out.println("Evictions: " + cache.getEvictions());
 
+        System.out.println("\n--- Read-Through Load Statistics ---");
+        cache.get("key7", k -> "loaded-" + k); // Miss, loads and caches key7
+        cache.get("key7", k -> "loaded-" + k); // Hit, loader not called
+        CacheStats snapshot = cache.stats();
+        System.out.println("Load successes: " + snapshot.loadSuccessCount());
+        System.out.printf("Average load penalty: %.0f ns%n", snapshot.averageLoadPenaltyNanos());
+        System.out.println("Evictions by cause: " + snapshot.evictionsByCause());
+        snapshot.windows().forEach(w -> System.out.printf("  window@%d hits=%d misses=%d hitRate=%.2f%n",
+                w.windowStartMillis(), w.hitCount(), w.missCount(), w.hitRate()));
+
+        LRUCache<String, String> untracked = new LRUCache<>(3, StatsCounter.disabled());
+        untracked.put("a", "1");
+        untracked.get("a");
+        System.out.println("Disabled stats snapshot: " + untracked.stats());
+
         System.out.println("\n--- Demonstrating Thread-Safety ---");
         LRUCache<Integer, String> concurrentCache = new LRUCache<>(5);
         ExecutorService executor = Executors.newFixedThreadPool(10); // 10 threads
@@ -302,7 +587,19 @@ public class GenericCacheLRU {
         System.out.println("Concurrent Cache Hits: " + concurrentCache.getHits());
         System.out.println("Concurrent Cache Misses: " + concurrentCache.getMisses());
         System.out.println("Concurrent Cache Evictions: " + concurrentCache.getEvictions());
-        concurrentCache.printCacheState();
+        concurrentCache.printCacheStats();
+
+        System.out.println("\n--- Segmented Cache (4 segments, capacity 8) ---");
+        SegmentedLRUCache<Integer, String> segmented = new SegmentedLRUCache<>(8, 4);
+        for (int i = 0; i < 20; i++) {
+            segmented.put(i, "Value-" + i);
+        }
+        System.out.println("Size after 20 puts: " + segmented.size());
+        System.out.println("Get 19: " + segmented.get(19));
+        System.out.println("Get 0 (evicted from its segment): " + segmented.get(0));
+        System.out.println("Segmented stats: hits=" + segmented.stats().hitCount()
+                + ", misses=" + segmented.stats().missCount()
+                + ", evictions=" + segmented.stats().evictionCount());
 
         System.out.println("\n--- End of Demonstration ---");
     }
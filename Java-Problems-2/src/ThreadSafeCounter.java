@@ -110,20 +110,39 @@ public class ThreadSafeCounter {
 
  */
 
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
+// Test-and-test-and-set with exponential backoff: spin on a plain read (no cache-line
+// ping-pong while the lock is held), CAS only when it looks free, back off 1, 2, 4 ...
+// onSpinWait()s after every lost race and, past MAX_SPINS, park for 1 us .. 1 ms.
+// (The old loop was inverted - `while (compareAndSet(false, true))` - so a thread that
+// found the lock taken walked straight into the critical section.)
 class customLock{
+    private static final int MAX_SPINS = 1 << 10;
+    private static final long MIN_PARK_NANOS = 1_000;
+    private static final long MAX_PARK_NANOS = 1_000_000;
     protected AtomicBoolean locked = new AtomicBoolean(false);
     protected void lock(){
-        while (locked.compareAndSet(false,true)){
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
+        int spins = 1;
+        long parkNanos = MIN_PARK_NANOS;
+        while (locked.get() || !locked.compareAndSet(false, true)) {
+            if (spins <= MAX_SPINS) {
+                for (int i = 0; i < spins; i++) {
+                    Thread.onSpinWait();
+                }
+                spins <<= 1;
+            } else {
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos << 1, MAX_PARK_NANOS);
             }
         }
     }
@@ -132,6 +151,147 @@ class customLock{
     }
 }
 
+// LongAdder-style counter: uncontended adds CAS a single base value; once two threads
+// collide, adds spread over padded cells picked by a per-thread probe. A thread whose
+// cell CAS fails moves to another cell and, after repeated collisions, the table doubles
+// (up to the next power of two >= cores). sum() adds base and every cell - accurate when
+// no add is in flight, and never blocks writers.
+class StripedCounter {
+    private static final int MAX_CELLS = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+    private static final ThreadLocal<int[]> PROBE =
+            ThreadLocal.withInitial(() -> new int[]{ThreadLocalRandom.current().nextInt() | 1});
+
+    // 7 longs on either side keep neighbouring cells off each other's cache line
+    static final class Cell {
+        long p1, p2, p3, p4, p5, p6, p7;
+        volatile long value;
+        long q1, q2, q3, q4, q5, q6, q7;
+        private static final AtomicLongFieldUpdater<Cell> VALUE = AtomicLongFieldUpdater.newUpdater(Cell.class, "value");
+
+        boolean cas(long expected, long update) {
+            return VALUE.compareAndSet(this, expected, update);
+        }
+    }
+
+    private final AtomicLong base = new AtomicLong();
+    private final AtomicBoolean resizing = new AtomicBoolean();
+    private volatile Cell[] cells;
+
+    void increment() {
+        add(1);
+    }
+
+    void add(long x) {
+        if (cells == null) {
+            long b = base.get();
+            if (base.compareAndSet(b, b + x)) return;
+        }
+        int[] probe = PROBE.get();
+        for (int collisions = 0; ; ) {
+            Cell[] cs = cells;
+            if (cs == null) { // first collision: create the cells, meanwhile keep trying base
+                grow(null);
+                long b = base.get();
+                if (base.compareAndSet(b, b + x)) return;
+                continue;
+            }
+            Cell cell = cs[probe[0] & (cs.length - 1)];
+            long v = cell.value;
+            if (cell.cas(v, v + x)) return;
+            probe[0] = next(probe[0]); // try elsewhere next time
+            if (++collisions >= 2 && cs.length < MAX_CELLS) {
+                grow(cs);
+                collisions = 0;
+            }
+        }
+    }
+
+    private static int next(int probe) {
+        probe ^= probe << 13;
+        probe ^= probe >>> 17;
+        return probe ^ (probe << 5);
+    }
+
+    // Doubles the table (or creates it with 2 cells); old cells are kept, so no add is lost
+    private void grow(Cell[] seen) {
+        if (!resizing.compareAndSet(false, true)) return;
+        try {
+            if (cells != seen) return; // someone else already grew it
+            int length = seen == null ? 2 : Math.min(seen.length << 1, MAX_CELLS);
+            Cell[] grown = new Cell[length];
+            int copied = seen == null ? 0 : seen.length;
+            if (seen != null) System.arraycopy(seen, 0, grown, 0, copied);
+            for (int i = copied; i < length; i++) grown[i] = new Cell();
+            cells = grown;
+        } finally {
+            resizing.set(false);
+        }
+    }
+
+    long sum() {
+        long sum = base.get();
+        Cell[] cs = cells;
+        if (cs != null) {
+            for (Cell cell : cs) sum += cell.value;
+        }
+        return sum;
+    }
+}
+
+// One padded slot per thread: increment() is a plain read plus an ordered store (lazySet)
+// to the caller's own slot - no CAS, no shared cache line. sum() walks every slot for an
+// accurate total; get() returns a total aggregated at most every refreshNanos, so frequent
+// readers don't pay for the walk. Slots of finished threads stay (their counts still count).
+class PerThreadCounter {
+    static final class Slot {
+        long p1, p2, p3, p4, p5, p6, p7;
+        volatile long value;
+        long q1, q2, q3, q4, q5, q6, q7;
+    }
+
+    private static final AtomicLongFieldUpdater<Slot> VALUE = AtomicLongFieldUpdater.newUpdater(Slot.class, "value");
+
+    private final CopyOnWriteArrayList<Slot> slots = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Slot> local = ThreadLocal.withInitial(() -> {
+        Slot slot = new Slot();
+        slots.add(slot);
+        return slot;
+    });
+    private final long refreshNanos;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile long aggregated;
+    private volatile long aggregatedAt = System.nanoTime();
+
+    PerThreadCounter(long refresh, TimeUnit unit) {
+        this.refreshNanos = unit.toNanos(refresh);
+    }
+
+    void increment() {
+        Slot slot = local.get();
+        VALUE.lazySet(slot, slot.value + 1); // single writer per slot
+    }
+
+    long sum() {
+        long sum = 0;
+        for (Slot slot : slots) sum += slot.value;
+        return sum;
+    }
+
+    // at most refreshNanos stale; one reader refreshes, the rest take the previous total
+    long get() {
+        long now = System.nanoTime();
+        if (now - aggregatedAt >= refreshNanos && refreshing.compareAndSet(false, true)) {
+            try {
+                aggregated = sum();
+                aggregatedAt = now;
+            } finally {
+                refreshing.set(false);
+            }
+        }
+        return aggregated;
+    }
+}
+
 class AtomicOps{
     protected AtomicInteger counter = new AtomicInteger(0);
     protected customLock lock = new customLock();
@@ -174,5 +334,22 @@ public class ThreadSafeCounter {
         executor.shutdown();
         executor.awaitTermination(40, TimeUnit.SECONDS);
         System.out.println("Final Count: " + atomicOps.getValue());
+
+        // Same job for the lock-free counters: 8 threads x 100_000 increments each
+        StripedCounter striped = new StripedCounter();
+        PerThreadCounter perThread = new PerThreadCounter(10, TimeUnit.MILLISECONDS);
+        ExecutorService counters = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            counters.submit(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    striped.increment();
+                    perThread.increment();
+                }
+            });
+        }
+        counters.shutdown();
+        counters.awaitTermination(40, TimeUnit.SECONDS);
+        System.out.println("StripedCounter: " + striped.sum() + ", PerThreadCounter: " + perThread.sum()
+                + " (expected 800000)");
     }
 }
@@ -1,26 +1,159 @@
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 
+// When scheduleFirstCompleted launches the backups: all at once, after a fixed delay,
+// or once the attempt has run longer than the p95 of recent successful attempts.
+class HedgingPolicy {
+    private final long fixedDelayMillis;
+    private final long[] samples; // null unless adaptive; recent latencies in nanos
+    private int sampleCount;      // guarded by this
+    private int nextSample;       // guarded by this
+
+    private HedgingPolicy(long fixedDelayMillis, int window) {
+        this.fixedDelayMillis = fixedDelayMillis;
+        this.samples = window > 0 ? new long[window] : null;
+    }
+
+    // The old behaviour: every supplier starts straight away
+    public static HedgingPolicy none() {
+        return new HedgingPolicy(0, 0);
+    }
+
+    public static HedgingPolicy fixedDelay(long delayMillis) {
+        return new HedgingPolicy(delayMillis, 0);
+    }
+
+    // Uses initialDelayMillis until `window` / 4 latencies have been observed
+    public static HedgingPolicy p95(long initialDelayMillis, int window) {
+        return new HedgingPolicy(initialDelayMillis, window);
+    }
+
+    public long hedgeDelayMillis() {
+        if (samples == null) return fixedDelayMillis;
+        long[] copy;
+        synchronized (this) {
+            if (sampleCount < Math.max(1, samples.length / 4)) return fixedDelayMillis;
+            copy = Arrays.copyOf(samples, sampleCount);
+        }
+        Arrays.sort(copy);
+        return TimeUnit.NANOSECONDS.toMillis(copy[(int) Math.ceil(copy.length * 0.95) - 1]);
+    }
+
+    public void recordLatency(long nanos) {
+        if (samples == null) return;
+        synchronized (this) {
+            samples[nextSample] = nanos;
+            nextSample = (nextSample + 1) % samples.length;
+            if (sampleCount < samples.length) sampleCount++;
+        }
+    }
+}
+
 class TaskScheduler {
     private ExecutorService executor;
+    private final Semaphore permits; // null when the pool size is the limit
+    private final Queue<Waiting> waitingForPermit = new ConcurrentLinkedQueue<>();
+
+    // A queued task and the future its caller holds, so a rejected start can fail it
+    private static final class Waiting {
+        final Runnable body;
+        final CompletableFuture<?> future;
+
+        Waiting(Runnable body, CompletableFuture<?> future) {
+            this.body = body;
+            this.future = future;
+        }
+    }
+
     protected TaskScheduler(ExecutorService executor){
         this.executor = executor;
+        this.permits = null;
     }
+
+    private TaskScheduler(ExecutorService executor, Semaphore permits){
+        this.executor = executor;
+        this.permits = permits;
+    }
+
+    public static TaskScheduler fixedPool(int concurrencyLimit){
+        return new TaskScheduler(Executors.newFixedThreadPool(concurrencyLimit));
+    }
+
+    // One virtual thread per task (JDK 21+, platform threads before that), at most
+    // concurrencyLimit of them running the supplier at once. Blocking I/O tasks then
+    // cost a parked virtual thread each instead of a whole pool thread.
+    public static TaskScheduler virtualThreads(int concurrencyLimit){
+        ExecutorService perTask;
+        try {
+            perTask = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            perTask = Executors.newCachedThreadPool();
+        }
+        return new TaskScheduler(perTask, new Semaphore(concurrencyLimit));
+    }
+
+    // Runs the supplier under the concurrency limit. In virtual-thread mode a thread is
+    // only started once a permit is held, so even the platform-thread fallback never has
+    // more than concurrencyLimit threads alive.
+    private <T> CompletableFuture<T> start(Supplier<T> task) {
+        if (permits == null) return CompletableFuture.supplyAsync(task, executor);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        waitingForPermit.add(new Waiting(() -> {
+            try {
+                future.complete(task.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                permits.release();
+                startWaiting();
+            }
+        }, future));
+        startWaiting();
+        return future;
+    }
+
+    private void startWaiting() {
+        while (!waitingForPermit.isEmpty() && permits.tryAcquire()) {
+            Waiting next = waitingForPermit.poll();
+            if (next == null) {
+                permits.release();
+                return;
+            }
+            try {
+                executor.execute(next.body);
+            } catch (RejectedExecutionException e) {
+                permits.release(); // shut down: the task never starts, its caller hears why
+                next.future.completeExceptionally(e);
+            }
+        }
+    }
+
     public <T> CompletableFuture<List<T>> scheduleAll(List<Supplier<T>> tasks) {
         // Execute all tasks concurrently and collect results in original order
         // 1. Submit each task and convert to CompletableFuture, maintaining order
         List<CompletableFuture<T>> futures = tasks.stream()
-                .map(task -> CompletableFuture.supplyAsync(task, executor))
+                .map(this::start)
                 .collect(Collectors.toList());
 
         // 2. Submit each task asynchronously using the thread pool.
@@ -33,16 +166,243 @@ class TaskScheduler {
                 .collect(Collectors.toList()));
     }
 
+    // Streaming version of scheduleAll: results are pushed to the subscriber in completion
+    // order as it requests them. At most maxInFlight tasks are running or waiting for
+    // demand at any time, and tasks are only pulled from the Iterable as room frees up,
+    // so memory stays flat however long the task list is and a slow subscriber slows
+    // the launches down instead of piling up results.
+    public <T> void scheduleStreaming(Iterable<? extends Supplier<? extends T>> tasks,
+                                      Flow.Subscriber<? super T> subscriber, int maxInFlight) {
+        if (maxInFlight <= 0) throw new IllegalArgumentException("maxInFlight must be positive");
+        StreamingRun<T> run = new StreamingRun<>(tasks.iterator(), subscriber, maxInFlight);
+        subscriber.onSubscribe(run);
+        run.drain();
+    }
+
+    // Pull-style variant: a blocking iterator over results in completion order that keeps
+    // at most maxInFlight results buffered or in flight
+    public <T> Iterator<T> scheduleIterator(Iterable<? extends Supplier<? extends T>> tasks, int maxInFlight) {
+        BlockingResultIterator<T> iterator = new BlockingResultIterator<>(maxInFlight);
+        scheduleStreaming(tasks, iterator, maxInFlight);
+        return iterator;
+    }
+
+    private final class StreamingRun<T> implements Flow.Subscription {
+        private final Iterator<? extends Supplier<? extends T>> source; // only touched inside drain()
+        private final Flow.Subscriber<? super T> subscriber;
+        private final int maxInFlight;
+        private final Queue<T> completed = new ConcurrentLinkedQueue<>();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger outstanding = new AtomicInteger(); // launched, not yet delivered
+        private final AtomicInteger wip = new AtomicInteger();         // serialises drain()
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+        private boolean done;
+
+        StreamingRun(Iterator<? extends Supplier<? extends T>> source, Flow.Subscriber<? super T> subscriber,
+                     int maxInFlight) {
+            this.source = source;
+            this.subscriber = subscriber;
+            this.maxInFlight = maxInFlight;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("request must be positive, was " + n);
+            } else {
+                demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        // Only one thread at a time gets past the wip check; anyone arriving meanwhile
+        // bumps wip so the running thread loops once more instead of missing the signal.
+        void drain() {
+            if (wip.getAndIncrement() != 0) return;
+            int missed = 1;
+            do {
+                if (!done && !cancelled) emitAndLaunch();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emitAndLaunch() {
+            while (demand.get() > 0) {
+                T next = completed.poll();
+                if (next == null) break;
+                demand.decrementAndGet();
+                outstanding.decrementAndGet();
+                subscriber.onNext(next);
+                if (cancelled) return;
+            }
+            Throwable failure = error;
+            if (failure != null) {
+                done = true;
+                subscriber.onError(failure);
+                return;
+            }
+            boolean more;
+            while ((more = source.hasNext()) && outstanding.get() < maxInFlight) {
+                Supplier<? extends T> task = source.next();
+                outstanding.incrementAndGet();
+                start(task).whenComplete((result, ex) -> {
+                    if (ex != null) error = ex;
+                    else if (result == null) error = new NullPointerException("Task returned null");
+                    else completed.add(result);
+                    drain();
+                });
+            }
+            if (!more && outstanding.get() == 0) {
+                done = true;
+                subscriber.onComplete();
+            }
+        }
+    }
+
+    private static final class BlockingResultIterator<T> implements Iterator<T>, Flow.Subscriber<T> {
+        private static final Object COMPLETE = new Object();
+        private final LinkedBlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+        private final int prefetch;
+        private Flow.Subscription subscription;
+        private Object next; // next signal taken from the queue but not yet returned
+
+        BlockingResultIterator(int prefetch) {
+            this.prefetch = prefetch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(prefetch);
+        }
+
+        @Override
+        public void onNext(T item) {
+            signals.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            signals.add(new CompletionException(throwable));
+        }
+
+        @Override
+        public void onComplete() {
+            signals.add(COMPLETE);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = signals.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    subscription.cancel();
+                    throw new CompletionException(e);
+                }
+            }
+            if (next instanceof CompletionException failure) throw failure;
+            return next != COMPLETE;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            T item = (T) next;
+            next = null;
+            subscription.request(1); // the consumer took one, make room for one more
+            return item;
+        }
+    }
+
     public <T> CompletableFuture<T> scheduleFirstCompleted(List<Supplier<T>> tasks) {
-        // Return the result of the first task to complete successfully
-        List<CompletableFuture<T>> futures = tasks.stream()
-                .map(task -> CompletableFuture.supplyAsync(task, executor))
-                .collect(Collectors.toList());
-        // CompletableFuture.anyOf() - Completes when any one future completes.
-        CompletableFuture<?> anyOfFuture = CompletableFuture.anyOf(futures.toArray(new CompletableFuture[0]));
-        // Cast the result to the expected type T. It's important to handle potential
-        // exceptions or cases where all tasks might complete exceptionally.
-        return anyOfFuture.thenApply(result -> (T) result);
+        return scheduleFirstCompleted(tasks, HedgingPolicy.none());
+    }
+
+    // Return the result of the first task to complete successfully. tasks.get(0) is the
+    // primary; each backup is launched one hedge delay after the previous attempt, or
+    // straight away when an attempt fails. The losers are cancelled (and interrupted)
+    // as soon as there is a winner; it fails only once every supplier has failed.
+    public <T> CompletableFuture<T> scheduleFirstCompleted(List<Supplier<T>> tasks, HedgingPolicy policy) {
+        if (tasks.isEmpty()) return CompletableFuture.failedFuture(new IllegalArgumentException("No tasks"));
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        List<Attempt<T>> attempts = new ArrayList<>();
+        AtomicInteger nextAttempt = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+
+        Runnable launchNext = new Runnable() {
+            @Override
+            public void run() {
+                int index = nextAttempt.getAndIncrement();
+                if (index >= tasks.size() || winner.isDone()) return;
+                Attempt<T> attempt = new Attempt<>();
+                synchronized (attempts) {
+                    attempts.add(attempt);
+                }
+                long launchedAt = System.nanoTime();
+                attempt.result.whenComplete((result, ex) -> {
+                    if (ex == null) {
+                        policy.recordLatency(System.nanoTime() - launchedAt);
+                        winner.complete(result);
+                    } else if (!attempt.result.isCancelled()) {
+                        if (failures.incrementAndGet() == tasks.size()) winner.completeExceptionally(ex);
+                        else run(); // don't wait for the timer to replace a failed attempt
+                    }
+                });
+                attempt.launch(tasks.get(index));
+                if (index + 1 < tasks.size()) {
+                    CompletableFuture.delayedExecutor(policy.hedgeDelayMillis(), TimeUnit.MILLISECONDS).execute(this);
+                }
+            }
+        };
+        winner.whenComplete((result, ex) -> {
+            synchronized (attempts) {
+                attempts.forEach(Attempt::cancel);
+            }
+        });
+        launchNext.run();
+        return winner;
+    }
+
+    // One supplier run whose cancel() also interrupts the thread running it
+    private final class Attempt<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        private Thread runner; // guarded by this
+
+        void launch(Supplier<T> task) {
+            start(() -> {
+                synchronized (this) {
+                    if (result.isDone()) return null; // lost before it even started
+                    runner = Thread.currentThread();
+                }
+                try {
+                    result.complete(task.get());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                } finally {
+                    synchronized (this) {
+                        runner = null;
+                    }
+                    if (result.isCancelled()) Thread.interrupted(); // don't leak our interrupt to the next task
+                }
+                return null;
+            });
+        }
+
+        void cancel() {
+            if (!result.cancel(false)) return;
+            synchronized (this) {
+                if (runner != null) runner.interrupt();
+            }
+        }
     }
 
     public void shutdown() {
@@ -131,8 +491,26 @@ public class ConcurrentTaskScheduler {
             throw new RuntimeException(e);
         }
 
+        System.out.println("\n--- Testing scheduleIterator (completion order, 2 in flight) ---");
+        Iterator<Integer> streamed = scheduler.scheduleIterator(integerTasks, 2);
+        while (streamed.hasNext()) {
+            System.out.println("Streamed result: " + streamed.next());
+        }
+
+        System.out.println("\n--- Testing hedged scheduleFirstCompleted (backup after 200 ms) ---");
+        long hedgeStart = System.nanoTime();
+        Integer hedged = scheduler.scheduleFirstCompleted(
+                Arrays.asList(integerTasks.get(2), integerTasks.get(0)), HedgingPolicy.fixedDelay(200)).get();
+        System.out.println("Hedged result: " + hedged + " after "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - hedgeStart) + " ms (slow primary cancelled)");
+
         scheduler.shutdown(); // Shut down the executor
 
+        System.out.println("\n--- Testing virtual-thread mode (limit 2) ---");
+        TaskScheduler virtualScheduler = TaskScheduler.virtualThreads(2);
+        virtualScheduler.scheduleAll(stringTask).get().forEach(System.out::println);
+        virtualScheduler.shutdown();
+
 
     }
 }
@@ -0,0 +1,95 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/*
+ * Tail latency of scheduleFirstCompleted with injected slow suppliers.
+ *
+ * Every request has 3 equivalent replicas. Each replica call takes FAST_MILLIS, except
+ * with probability SLOW_PROBABILITY it takes SLOW_MILLIS (GC pause, slow disk, ...).
+ * CLIENTS threads issue requests back to back against a pool of POOL_SIZE threads.
+ *
+ * Policies compared:
+ *  - primary only : no backups at all (the tail we are trying to fix)
+ *  - all at once  : the old behaviour, 3x the load on every request
+ *  - fixed 30 ms  : hedge after a fixed delay
+ *  - p95 adaptive : hedge once the attempt is slower than the recent p95
+ *
+ * "attempts/req" shows the extra load each policy costs.
+ *
+ * java HedgingBenchmark [requestsPerClient]
+ */
+public class HedgingBenchmark {
+    private static final long FAST_MILLIS = 10;
+    private static final long SLOW_MILLIS = 250;
+    private static final double SLOW_PROBABILITY = 0.05;
+    private static final int REPLICAS = 3;
+    private static final int CLIENTS = 8;
+    private static final int POOL_SIZE = 32;
+
+    private static Supplier<Integer> replica(int id, AtomicLong attempts) {
+        return () -> {
+            attempts.incrementAndGet();
+            long millis = ThreadLocalRandom.current().nextDouble() < SLOW_PROBABILITY ? SLOW_MILLIS : FAST_MILLIS;
+            try {
+                TimeUnit.MILLISECONDS.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("cancelled");
+            }
+            return id;
+        };
+    }
+
+    private static void run(String name, int replicas, Supplier<HedgingPolicy> policyFactory, int requestsPerClient)
+            throws InterruptedException {
+        TaskScheduler scheduler = TaskScheduler.fixedPool(POOL_SIZE);
+        HedgingPolicy policy = policyFactory.get(); // shared, so the adaptive one learns across requests
+        AtomicLong attempts = new AtomicLong();
+        long[][] latencies = new long[CLIENTS][requestsPerClient];
+        List<Thread> clients = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++) {
+            int client = c;
+            Thread thread = new Thread(() -> {
+                for (int r = 0; r < requestsPerClient; r++) {
+                    List<Supplier<Integer>> tasks = new ArrayList<>();
+                    for (int i = 0; i < replicas; i++) tasks.add(replica(i, attempts));
+                    long start = System.nanoTime();
+                    CompletableFuture<Integer> result = scheduler.scheduleFirstCompleted(tasks, policy);
+                    result.join();
+                    latencies[client][r] = System.nanoTime() - start;
+                }
+            });
+            clients.add(thread);
+            thread.start();
+        }
+        for (Thread thread : clients) thread.join();
+        scheduler.shutdown();
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%-14s p50 %6.1f ms  p95 %6.1f ms  p99 %6.1f ms  max %6.1f ms  attempts/req %.2f%n",
+                name, percentile(all, 0.50), percentile(all, 0.95), percentile(all, 0.99),
+                all[all.length - 1] / 1e6, (double) attempts.get() / all.length);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.ceil(sorted.length * p) - 1] / 1e6;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int requestsPerClient = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        System.out.println(CLIENTS + " clients x " + requestsPerClient + " requests, replica latency "
+                + FAST_MILLIS + " ms (" + (int) (SLOW_PROBABILITY * 100) + "% take " + SLOW_MILLIS + " ms)");
+
+        run("warm-up", REPLICAS, () -> HedgingPolicy.fixedDelay(30), 20);
+        run("primary only", 1, HedgingPolicy::none, requestsPerClient);
+        run("all at once", REPLICAS, HedgingPolicy::none, requestsPerClient);
+        run("fixed 30 ms", REPLICAS, () -> HedgingPolicy.fixedDelay(30), requestsPerClient);
+        run("p95 adaptive", REPLICAS, () -> HedgingPolicy.p95(30, 256), requestsPerClient);
+    }
+}
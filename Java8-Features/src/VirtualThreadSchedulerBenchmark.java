@@ -0,0 +1,72 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ * 100k blocking (sleeping) tasks through TaskScheduler.scheduleAll:
+ *  - fixedPool(limit)      : `limit` platform threads, each parked in sleep()
+ *  - virtualThreads(limit) : one virtual thread per running task, `limit` permits
+ *
+ * Reports wall time, tasks/sec, peak live threads and heap growth. On JDK 17 the
+ * virtual mode falls back to platform threads (see TaskScheduler.virtualThreads),
+ * so the memory gap only shows on JDK 21+.
+ *
+ * java -Xmx2g VirtualThreadSchedulerBenchmark [tasks] [sleepMillis] [limit]
+ */
+public class VirtualThreadSchedulerBenchmark {
+
+    private static List<Supplier<Integer>> sleepingTasks(int count, long sleepMillis) {
+        List<Supplier<Integer>> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = i;
+            tasks.add(() -> {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(sleepMillis); // stands in for a blocking I/O call
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return id;
+            });
+        }
+        return tasks;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void run(String name, TaskScheduler scheduler, List<Supplier<Integer>> tasks) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.gc();
+        threads.resetPeakThreadCount();
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+
+        List<Integer> results = scheduler.scheduleAll(tasks).get();
+
+        long elapsed = System.nanoTime() - start;
+        long heapAfter = usedHeap();
+        scheduler.shutdown();
+        System.out.printf("%-16s %8d tasks %9.0f ms %11.0f tasks/s  peak threads %5d  heap +%d MB%n",
+                name, results.size(), elapsed / 1e6, results.size() * 1e9 / elapsed,
+                threads.getPeakThreadCount(), (heapAfter - heapBefore) >> 20);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long sleepMillis = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        int limit = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+        System.out.println("JDK " + Runtime.version() + ", " + count + " tasks x " + sleepMillis
+                + " ms sleep, concurrency limit " + limit);
+
+        List<Supplier<Integer>> tasks = sleepingTasks(count, sleepMillis);
+        run("fixed pool", TaskScheduler.fixedPool(limit), tasks);
+        run("virtual threads", TaskScheduler.virtualThreads(limit), tasks);
+        // A limit no platform pool could afford, cheap with virtual threads (JDK 21+)
+        run("virtual (10k)", TaskScheduler.virtualThreads(10_000), tasks);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+
+READER-BIASED LOCK BENCHMARK
+--------------------------------------------------
+
+1. ReadWriteCounter, read-dominated: 100% and 99.9% getCount(), rest increment()
+   (writeMillis = 0), for 1 .. maxThreads threads
+2. cache lookups: a HashMap of CACHE_SIZE entries behind the lock's read lock,
+   99% get(random key), 1% put under the write lock
+
+locks: ReentrantReadWriteLock, ReaderBiasedLock (over an RRWL), StampedLock.asReadWriteLock(),
+and ReadWriteCounter's optimistic StampedLock mode for part 1.
+ops/s over MEASURE_MILLIS after a warm-up round.
+
+javac ThreadLocks.java ReaderBiasedLock.java BiasedLockBenchmark.java
+java BiasedLockBenchmark [maxThreads]
+
+*/
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+class BiasedLockBenchmark {
+    private static final long WARMUP_MILLIS = 300;
+    private static final long MEASURE_MILLIS = 1000;
+    private static final int CACHE_SIZE = 100_000;
+
+    interface Op {
+        void run(boolean write, ThreadLocalRandom random);
+    }
+
+    private static double run(int threads, double writeFraction, long millis, Op op) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    long count = 0;
+                    while ((count & 255) != 0 || System.nanoTime() < deadline) {
+                        op.run(writeFraction > 0 && random.nextDouble() < writeFraction, random);
+                        count++;
+                    }
+                    ops.add(count);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return ops.sum() * 1e9 / (System.nanoTime() - begin);
+    }
+
+    private static double measure(int threads, double writeFraction, Op op) throws InterruptedException {
+        run(threads, writeFraction, WARMUP_MILLIS, op);
+        return run(threads, writeFraction, MEASURE_MILLIS, op);
+    }
+
+    private static Op counter(ReadWriteCounter counter) {
+        return (write, random) -> {
+            if (write) counter.increment();
+            else counter.getCount();
+        };
+    }
+
+    private static Op cache(ReadWriteLock lock) {
+        Map<Integer, Integer> map = new HashMap<>();
+        for (int i = 0; i < CACHE_SIZE; i++) map.put(i, i);
+        return (write, random) -> {
+            int key = random.nextInt(CACHE_SIZE);
+            if (write) {
+                lock.writeLock().lock();
+                try {
+                    map.put(key, key + 1);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } else {
+                lock.readLock().lock();
+                try {
+                    map.get(key);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors() + ", " + MEASURE_MILLIS + " ms per cell");
+        String[] names = {"RRWL", "ReaderBiased", "Stamped.asRW", "optimistic"};
+        List<Supplier<ReadWriteLock>> locks = List.of(
+                ReentrantReadWriteLock::new, ReaderBiasedLock::new, () -> new StampedLock().asReadWriteLock());
+
+        for (double writeFraction : new double[]{0, 0.001}) {
+            System.out.printf("ReadWriteCounter, %.1f%% writes%n", writeFraction * 100);
+            System.out.printf("  %-8s", "threads");
+            for (String name : names) System.out.printf(" %16s", name);
+            System.out.println();
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                System.out.printf("  %-8d", threads);
+                for (Supplier<ReadWriteLock> lock : locks) {
+                    System.out.printf(" %,16.0f", measure(threads, writeFraction, counter(new ReadWriteCounter(lock.get(), 0))));
+                }
+                System.out.printf(" %,16.0f%n", measure(threads, writeFraction, counter(new ReadWriteCounter(true, 0))));
+            }
+        }
+
+        System.out.println("cache lookups, " + CACHE_SIZE + " entries, 1% writes");
+        System.out.printf("  %-8s", "threads");
+        for (int i = 0; i < locks.size(); i++) System.out.printf(" %16s", names[i]);
+        System.out.println();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            System.out.printf("  %-8d", threads);
+            for (Supplier<ReadWriteLock> lock : locks) {
+                System.out.printf(" %,16.0f", measure(threads, 0.01, cache(lock.get())));
+            }
+            System.out.println();
+        }
+    }
+}
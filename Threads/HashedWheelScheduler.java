@@ -0,0 +1,439 @@
+/*
+
+HIERARCHICAL HASHED-WHEEL TIMER
+--------------------------------------------------
+
+ScheduledThreadPoolExecutor / DelayQueue keep pending tasks in a binary heap:
+schedule and cancel are O(log n) under one lock. Fine for a handful of periodic
+jobs, painful with millions of per-request timeouts that are almost always
+cancelled before they fire.
+
+A timing wheel trades exact ordering for tick granularity (1 ms by default):
+
+    level 0 : 256 slots x 1 tick          -> covers        256 ticks
+    level 1 : 256 slots x 256 ticks       -> covers     65,536 ticks
+    level 2 : 256 slots x 65,536 ticks    -> covers ~16.7M ticks
+    level 3 : 256 slots x 16.7M ticks     -> covers ~4.3G ticks (~49 days at 1 ms)
+
+* schedule : lock-free offer into pendingAdds; the wheel thread links the task into
+             slot (deadline >> 8*level) & 255 of the first level wide enough - O(1)
+* cancel   : FutureTask.cancel + offer into pendingCancels; the wheel thread unlinks
+             it from its slot's doubly-linked list - O(1)
+* tick     : run level-0 slot; whenever level L wraps to slot 0, the current slot of
+             level L+1 is "cascaded" down (re-linked by its remaining delay), the same
+             scheme the Linux kernel timer used
+
+Tasks fire on a worker pool, at most one tick late. Only the wheel thread touches the
+slots, so there is no lock anywhere on the schedule/cancel path.
+
+Differences from ScheduledThreadPoolExecutor:
+* shutdown() cancels delayed tasks that have not fired yet (STPE runs them by default)
+* timing resolution is the tick, not the nanosecond
+
+*/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+class HashedWheelScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+    private static final int WHEEL_BITS = 8;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_SPAN = (1L << (WHEEL_BITS * LEVELS)) - 1;
+    // Delays are capped here (~146 years), as STPE does, so "effectively never" values such as
+    // Long.MAX_VALUE days can't wrap nanoTime() + delay around to a deadline in the past
+    private static final long MAX_DELAY_NANOS = Long.MAX_VALUE >> 1;
+    private static final int MAX_ADDS_PER_TICK = 100_000; // keeps a burst of schedules from stalling the clock
+
+    private final long tickNanos;
+    private final long startNanos = System.nanoTime();
+    private final WheelTask<?>[][] wheels = new WheelTask<?>[LEVELS][WHEEL_SIZE]; // slot heads
+    private final Queue<WheelTask<?>> pendingAdds = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTask<?>> pendingCancels = new ConcurrentLinkedQueue<>();
+    private final ExecutorService workers;
+    private final Thread wheelThread;
+    private final List<Runnable> neverRun = new ArrayList<>();
+    private volatile boolean shutdown;
+    private volatile int queued; // tasks linked into the wheel, written by the wheel thread only
+    private long currentTick;    // wheel thread only
+
+    HashedWheelScheduler(int workerThreads) {
+        this(workerThreads, 1, TimeUnit.MILLISECONDS);
+    }
+
+    HashedWheelScheduler(int workerThreads, long tick, TimeUnit unit) {
+        if (tick <= 0) throw new IllegalArgumentException("tick must be positive");
+        this.tickNanos = unit.toNanos(tick);
+        AtomicInteger workerId = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads,
+                r -> new Thread(r, "wheel-worker-" + workerId.incrementAndGet()));
+        this.wheelThread = new Thread(this::runWheel, "hashed-wheel-timer");
+        wheelThread.start();
+    }
+
+    final class WheelTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        private final long period; // 0 = one-shot, > 0 = fixed rate, < 0 = fixed delay (as in STPE)
+        private volatile long deadlineNanos;
+        // Wheel thread only
+        private long deadlineTick;
+        private WheelTask<?> prev, next;
+        private int level, slot;
+        private boolean linked;
+
+        WheelTask(Callable<V> callable, long deadlineNanos) {
+            super(callable);
+            this.period = 0;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        WheelTask(Runnable runnable, long deadlineNanos, long period) {
+            super(runnable, null);
+            this.period = period;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) return 0;
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) pendingCancels.offer(this); // unlinked on the next tick
+            return cancelled;
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (super.runAndReset()) {
+                deadlineNanos = period > 0 ? after(deadlineNanos, period) : after(System.nanoTime(), -period);
+                try {
+                    enqueue(this);
+                } catch (RejectedExecutionException e) {
+                    cancel(false); // re-arm raced with shutdown
+                }
+            }
+        }
+    }
+
+    // ---- ScheduledExecutorService ----
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return enqueue(new WheelTask<Void>(command, deadline(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return enqueue(new WheelTask<>(callable, deadline(delay, unit)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) throw new IllegalArgumentException("period must be positive");
+        return enqueue(new WheelTask<Void>(command, deadline(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0) throw new IllegalArgumentException("delay must be positive");
+        return enqueue(new WheelTask<Void>(command, deadline(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    private static long deadline(long delay, TimeUnit unit) {
+        return after(System.nanoTime(), unit.toNanos(Math.max(0, delay)));
+    }
+
+    private static long after(long baseNanos, long delayNanos) {
+        return baseNanos + Math.min(delayNanos, MAX_DELAY_NANOS);
+    }
+
+    private <V> WheelTask<V> enqueue(WheelTask<V> task) {
+        if (shutdown) throw new RejectedExecutionException("scheduler is shut down");
+        pendingAdds.offer(task);
+        // The wheel thread drains pendingAdds after it sees the flag; if we lost that race, cancel here
+        if (shutdown && pendingAdds.remove(task)) task.cancel(false);
+        return task;
+    }
+
+    /** Tasks currently linked into the wheel (not counting adds the wheel thread has not drained yet). */
+    int queuedTaskCount() {
+        return queued;
+    }
+
+    // ---- wheel thread ----
+
+    private void runWheel() {
+        try {
+            while (!shutdown) {
+                long elapsedTicks = (System.nanoTime() - startNanos) / tickNanos;
+                while (currentTick <= elapsedTicks && !shutdown) {
+                    processCancels();
+                    processAdds();
+                    tick();
+                }
+                long sleep = startNanos + currentTick * tickNanos - System.nanoTime();
+                if (sleep > 0) LockSupport.parkNanos(this, sleep);
+            }
+        } finally {
+            collectUnfired();
+            workers.shutdown();
+        }
+    }
+
+    private void processCancels() {
+        WheelTask<?> task;
+        while ((task = pendingCancels.poll()) != null) {
+            if (task.linked) unlink(task);
+        }
+    }
+
+    private void processAdds() {
+        WheelTask<?> task;
+        for (int i = 0; i < MAX_ADDS_PER_TICK && (task = pendingAdds.poll()) != null; i++) {
+            if (task.isCancelled()) continue;
+            task.deadlineTick = Math.max(0, ceilDiv(task.deadlineNanos - startNanos, tickNanos));
+            link(task);
+        }
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    private void tick() {
+        int index = (int) (currentTick & WHEEL_MASK);
+        if (index == 0) {
+            // Level L just wrapped: pull the next slot of level L+1 down, and keep going while that wraps too
+            for (int level = 1; level < LEVELS; level++) {
+                int slot = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+                cascade(level, slot);
+                if (slot != 0) break;
+            }
+        }
+        WheelTask<?> task = detachSlot(0, index);
+        while (task != null) {
+            WheelTask<?> next = task.next;
+            task.next = null;
+            if (task.isCancelled()) {
+                // cancelled but its cancel notice is still queued; processCancels will skip it
+            } else if (task.deadlineTick > currentTick) {
+                link(task); // only clamped far-future tasks can get here
+            } else {
+                workers.execute(task);
+            }
+            task = next;
+        }
+        currentTick++;
+    }
+
+    private void cascade(int level, int slot) {
+        WheelTask<?> task = detachSlot(level, slot);
+        while (task != null) {
+            WheelTask<?> next = task.next;
+            task.next = null;
+            link(task);
+            task = next;
+        }
+    }
+
+    private void link(WheelTask<?> task) {
+        long expires = task.deadlineTick;
+        long span = expires - currentTick;
+        int level;
+        if (span < 0) {
+            expires = currentTick; // late: fire on the slot about to be processed
+            level = 0;
+        } else if (span > MAX_SPAN) {
+            expires = currentTick + MAX_SPAN; // beyond the top wheel: park in it and re-link when cascaded
+            level = LEVELS - 1;
+        } else {
+            level = 0;
+            while (span >= 1L << (WHEEL_BITS * (level + 1))) level++;
+        }
+        int slot = (int) ((expires >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        WheelTask<?> head = wheels[level][slot];
+        task.prev = null;
+        task.next = head;
+        if (head != null) head.prev = task;
+        wheels[level][slot] = task;
+        task.level = level;
+        task.slot = slot;
+        task.linked = true;
+        queued++;
+    }
+
+    private void unlink(WheelTask<?> task) {
+        if (task.prev == null) wheels[task.level][task.slot] = task.next;
+        else task.prev.next = task.next;
+        if (task.next != null) task.next.prev = task.prev;
+        task.prev = task.next = null;
+        task.linked = false;
+        queued--;
+    }
+
+    // Empties a slot; the returned chain is still linked through next, everything else is reset
+    private WheelTask<?> detachSlot(int level, int slot) {
+        WheelTask<?> head = wheels[level][slot];
+        wheels[level][slot] = null;
+        for (WheelTask<?> task = head; task != null; task = task.next) {
+            task.prev = null;
+            task.linked = false;
+            queued--;
+        }
+        return head;
+    }
+
+    private void collectUnfired() {
+        List<Runnable> unfired = new ArrayList<>();
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+                WheelTask<?> task = detachSlot(level, slot);
+                while (task != null) {
+                    WheelTask<?> next = task.next;
+                    task.next = null;
+                    if (!task.isCancelled()) unfired.add(task);
+                    task = next;
+                }
+            }
+        }
+        WheelTask<?> task;
+        while ((task = pendingAdds.poll()) != null) {
+            if (!task.isCancelled()) unfired.add(task);
+        }
+        pendingCancels.clear();
+        for (Runnable r : unfired) ((WheelTask<?>) r).cancel(false);
+        synchronized (neverRun) {
+            neverRun.addAll(unfired);
+        }
+    }
+
+    // ---- lifecycle ----
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(wheelThread);
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        boolean interrupted = false;
+        while (wheelThread.isAlive()) {
+            try {
+                wheelThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        List<Runnable> result = new ArrayList<>();
+        synchronized (neverRun) {
+            result.addAll(neverRun);
+        }
+        result.addAll(workers.shutdownNow());
+        if (interrupted) Thread.currentThread().interrupt();
+        return result;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return !wheelThread.isAlive() && workers.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        TimeUnit.NANOSECONDS.timedJoin(wheelThread, Math.max(0, deadline - System.nanoTime()));
+        if (wheelThread.isAlive()) return false;
+        return workers.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    // ---- demo: same three tasks as ScheduledExecutor, then a burst of timeouts ----
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("HASHED WHEEL SCHEDULER EXAMPLE");
+        System.out.println("-".repeat(50));
+        HashedWheelScheduler scheduler = new HashedWheelScheduler(2);
+        long start = System.nanoTime();
+        Runnable noop = () -> {};
+        try {
+            ScheduledFuture<String> delayed = scheduler.schedule(() -> "delayed task ran after "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms", 300, TimeUnit.MILLISECONDS);
+            ScheduledFuture<?> fixedRate = scheduler.scheduleAtFixedRate(() -> System.out.printf(
+                    "%5d ms - fixed rate task in %s%n", (System.nanoTime() - start) / 1_000_000,
+                    Thread.currentThread().getName()), 100, 200, TimeUnit.MILLISECONDS);
+            ScheduledFuture<?> fixedDelay = scheduler.scheduleWithFixedDelay(() -> {
+                System.out.printf("%5d ms - fixed delay task starting in %s%n",
+                        (System.nanoTime() - start) / 1_000_000, Thread.currentThread().getName());
+                try {
+                    Thread.sleep(100); // the next run starts 250 ms after this one ends
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, 0, 250, TimeUnit.MILLISECONDS);
+
+            System.out.println(delayed.get());
+            Thread.sleep(1000);
+            fixedRate.cancel(false);
+            fixedDelay.cancel(false);
+            System.out.println("Fixed rate cancelled: " + fixedRate.isCancelled()
+                    + ", fixed delay cancelled: " + fixedDelay.isCancelled());
+
+            // Per-request deadlines: a million 30 s timeouts, all cancelled before they fire
+            int timeouts = 1_000_000;
+            List<ScheduledFuture<?>> handles = new ArrayList<>(timeouts);
+            long t0 = System.nanoTime();
+            for (int i = 0; i < timeouts; i++) handles.add(scheduler.schedule(noop, 30, TimeUnit.SECONDS));
+            long scheduled = System.nanoTime() - t0;
+            while (scheduler.queuedTaskCount() < timeouts) Thread.sleep(1);
+            System.out.printf("Scheduled %d timeouts in %d ms, %d linked into the wheel%n",
+                    timeouts, scheduled / 1_000_000, scheduler.queuedTaskCount());
+            t0 = System.nanoTime();
+            for (ScheduledFuture<?> handle : handles) handle.cancel(false);
+            long cancelled = System.nanoTime() - t0;
+            while (scheduler.queuedTaskCount() > 0) Thread.sleep(1);
+            System.out.printf("Cancelled them in %d ms, %d left in the wheel%n",
+                    cancelled / 1_000_000, scheduler.queuedTaskCount());
+
+            // "Effectively never": the deadline is capped instead of overflowing into the past
+            ScheduledFuture<?> never = scheduler.schedule(noop, Long.MAX_VALUE, TimeUnit.DAYS);
+            Thread.sleep(50);
+            System.out.println("Long.MAX_VALUE days: done after 50 ms " + never.isDone() + ", "
+                    + never.getDelay(TimeUnit.DAYS) / 365 + " years to go");
+            never.cancel(false);
+        } finally {
+            scheduler.shutdown();
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
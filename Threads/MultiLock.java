@@ -0,0 +1,333 @@
+/*
+
+MULTI-LOCK ACQUISITION (global ordering, bounded backoff, wait-for graph)
+--------------------------------------------------
+
+Pen/Paper (ThreadLocks, ThreadCommunication) take two locks in opposite orders:
+* with lock()   : Thread-1 holds pen and waits for paper, Thread-2 holds paper and waits
+                  for pen - deadlock
+* with tryLock(): whoever fails lets go and tries again - under load both keep failing
+                  together (livelock), and every failed round is a retry storm on the locks
+
+MultiLock.acquireAll(locks...) takes every lock in one global order, so no two callers can
+each hold what the other wants:
+
+    try (MultiLock.Held held = multiLock.acquireAll(pen, paper)) {   // same as (paper, pen)
+        ...
+    }                                                                 // close() unlocks all
+
+* global order    : OrderedLock ids first (unique, assigned at construction), then any
+                    other Lock by System.identityHashCode
+* ties            : two plain locks can share an identity hash; within such a group the
+                    first lock is taken with lock(), the others with tryLock() - on failure
+                    everything is released and the caller backs off (randomised exponential,
+                    capped at maxBackoff) before retrying
+* Strategy.RETRY  : the Pen/Paper way, kept for comparison - locks in the caller's order,
+                    tryLock() for all but the first, back off and retry on failure
+* acquisitions() / retries() count what each strategy cost
+
+WaitForGraph catches the code that does not go through acquireAll: it builds the graph
+"thread -> owner of the lock it is blocked on" from a thread dump (synchronized monitors and
+ReentrantLock-style ownable synchronizers; shared read locks have no owner and are invisible),
+and reports every cycle seen in two consecutive scans, with the stack of each thread in it.
+
+*/
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+class MultiLock {
+    private static final long MIN_BACKOFF_NANOS = 1_000;
+
+    enum Strategy { ORDERED, RETRY }
+
+    // a ReentrantLock with a unique id, so it never ties with another lock in the global order
+    static class OrderedLock extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+        private static final AtomicLong IDS = new AtomicLong();
+        private final long id = IDS.incrementAndGet();
+
+        OrderedLock() {
+        }
+
+        OrderedLock(boolean fair) {
+            super(fair);
+        }
+
+        long id() {
+            return id;
+        }
+    }
+
+    static final Comparator<Lock> GLOBAL_ORDER = (a, b) -> {
+        boolean aOrdered = a instanceof OrderedLock;
+        boolean bOrdered = b instanceof OrderedLock;
+        if (aOrdered != bOrdered) return aOrdered ? -1 : 1;
+        if (aOrdered) return Long.compare(((OrderedLock) a).id(), ((OrderedLock) b).id());
+        return Integer.compare(System.identityHashCode(a), System.identityHashCode(b));
+    };
+
+    static final class Held implements AutoCloseable {
+        private final Lock[] locks;
+        private boolean released;
+
+        private Held(Lock[] locks) {
+            this.locks = locks;
+        }
+
+        /** Unlocks in reverse acquisition order; calling it again does nothing. */
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            for (int i = locks.length - 1; i >= 0; i--) locks[i].unlock();
+        }
+    }
+
+    private final Strategy strategy;
+    private final long maxBackoffNanos;
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    MultiLock() {
+        this(Strategy.ORDERED, 1, TimeUnit.MILLISECONDS);
+    }
+
+    // maxBackoff 0 = just Thread.yield() between attempts
+    MultiLock(Strategy strategy, long maxBackoff, TimeUnit unit) {
+        this.strategy = strategy;
+        this.maxBackoffNanos = unit.toNanos(maxBackoff);
+    }
+
+    long acquisitions() {
+        return acquisitions.sum();
+    }
+
+    long retries() {
+        return retries.sum();
+    }
+
+    Held acquireAll(Lock... locks) throws InterruptedException {
+        Lock[] order = distinct(locks);
+        if (strategy == Strategy.ORDERED) Arrays.sort(order, GLOBAL_ORDER);
+        for (int attempt = 0; ; attempt++) {
+            int taken = 0;
+            try {
+                while (taken < order.length) {
+                    Lock lock = order[taken];
+                    if (mayBlock(order, taken)) lock.lockInterruptibly();
+                    else if (!lock.tryLock()) break;
+                    taken++;
+                }
+            } catch (InterruptedException e) {
+                unlock(order, taken);
+                throw e;
+            }
+            if (taken == order.length) {
+                acquisitions.increment();
+                return new Held(order);
+            }
+            unlock(order, taken);
+            retries.increment();
+            backOff(attempt);
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    // ORDERED blocks on every lock that ranks strictly above the one before it; RETRY only on the first
+    private boolean mayBlock(Lock[] order, int index) {
+        if (index == 0) return true;
+        return strategy == Strategy.ORDERED && GLOBAL_ORDER.compare(order[index - 1], order[index]) != 0;
+    }
+
+    private static Lock[] distinct(Lock[] locks) {
+        Set<Lock> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Lock> distinct = new ArrayList<>(locks.length);
+        for (Lock lock : locks) {
+            if (seen.add(lock)) distinct.add(lock);
+        }
+        return distinct.toArray(new Lock[0]);
+    }
+
+    private static void unlock(Lock[] order, int taken) {
+        for (int i = taken - 1; i >= 0; i--) order[i].unlock();
+    }
+
+    private void backOff(int attempt) {
+        if (maxBackoffNanos == 0) {
+            Thread.yield();
+            return;
+        }
+        long cap = Math.min(maxBackoffNanos, MIN_BACKOFF_NANOS << Math.min(attempt, 20));
+        LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(cap / 2, cap + 1));
+    }
+
+    // ---- deadlock detection ----
+
+    static final class WaitForGraph {
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+        // Every blocked thread waits on one lock with (at most) one owner, so each node has at most one
+        // outgoing edge and following edges from any thread either ends or runs into a cycle.
+        static List<List<ThreadInfo>> findCycles() {
+            Map<Long, ThreadInfo> byId = new HashMap<>();
+            for (ThreadInfo info : THREADS.dumpAllThreads(THREADS.isObjectMonitorUsageSupported(),
+                    THREADS.isSynchronizerUsageSupported())) {
+                byId.put(info.getThreadId(), info);
+            }
+            List<List<ThreadInfo>> cycles = new ArrayList<>();
+            Set<Long> visited = new HashSet<>();
+            for (ThreadInfo start : byId.values()) {
+                List<ThreadInfo> path = new ArrayList<>();
+                Map<Long, Integer> onPath = new HashMap<>();
+                ThreadInfo current = start;
+                while (current != null && !visited.contains(current.getThreadId())) {
+                    Integer seenAt = onPath.putIfAbsent(current.getThreadId(), path.size());
+                    if (seenAt != null) {
+                        cycles.add(new ArrayList<>(path.subList(seenAt, path.size())));
+                        break;
+                    }
+                    path.add(current);
+                    long owner = current.getLockOwnerId();
+                    current = owner == -1 ? null : byId.get(owner);
+                }
+                for (ThreadInfo info : path) visited.add(info.getThreadId());
+            }
+            return cycles;
+        }
+
+        static String describe(List<ThreadInfo> cycle) {
+            StringBuilder report = new StringBuilder("wait-for cycle of " + cycle.size() + " threads:\n");
+            for (ThreadInfo info : cycle) {
+                report.append("  \"").append(info.getThreadName()).append("\" waits for ").append(info.getLockName())
+                        .append(" held by \"").append(info.getLockOwnerName()).append("\"\n");
+            }
+            for (ThreadInfo info : cycle) report.append(info); // jstack-style dump, top frames
+            return report.toString();
+        }
+
+        // Scans every period; a cycle is reported once, after it showed up in two scans in a row
+        // (a thread dump is not an atomic snapshot, so a single scan can stitch together a cycle that never existed).
+        static Thread startDetector(long period, TimeUnit unit, Consumer<String> report) {
+            Thread detector = new Thread(() -> {
+                Set<Set<Long>> previous = new HashSet<>();
+                Set<Set<Long>> reported = new HashSet<>();
+                while (!Thread.currentThread().isInterrupted()) {
+                    Set<Set<Long>> current = new HashSet<>();
+                    for (List<ThreadInfo> cycle : findCycles()) {
+                        Set<Long> ids = new TreeSet<>();
+                        for (ThreadInfo info : cycle) ids.add(info.getThreadId());
+                        current.add(ids);
+                        if (previous.contains(ids) && reported.add(ids)) report.accept(describe(cycle));
+                    }
+                    previous = current;
+                    try {
+                        unit.sleep(period);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "wait-for-graph");
+            detector.setDaemon(true);
+            detector.start();
+            return detector;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        // Pen/Paper in opposite orders, through acquireAll: never deadlocks
+        Lock pen = new ReentrantLock();
+        Lock paper = new ReentrantLock();
+        MultiLock multiLock = new MultiLock();
+        int[] uses = new int[1];
+        Thread thread1 = new Thread(() -> {
+            for (int i = 0; i < 100_000; i++) {
+                Held held;
+                try {
+                    held = multiLock.acquireAll(pen, paper);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    uses[0]++;
+                } finally {
+                    held.close();
+                }
+            }
+        }, "Thread-1");
+        Thread thread2 = new Thread(() -> {
+            for (int i = 0; i < 100_000; i++) {
+                Held held;
+                try {
+                    held = multiLock.acquireAll(paper, pen);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    uses[0]++;
+                } finally {
+                    held.close();
+                }
+            }
+        }, "Thread-2");
+        thread1.start();
+        thread2.start();
+        thread1.join();
+        thread2.join();
+        System.out.println("acquireAll: " + uses[0] + " uses, " + multiLock.acquisitions() + " acquisitions, "
+                + multiLock.retries() + " retries");
+
+        // The same two locks taken by hand in opposite orders: the detector finds the cycle
+        CountDownLatch bothHoldOne = new CountDownLatch(2);
+        CountDownLatch found = new CountDownLatch(1);
+        Thread detector = WaitForGraph.startDetector(50, TimeUnit.MILLISECONDS, report -> {
+            System.out.print(report);
+            found.countDown();
+        });
+        Thread penFirst = new Thread(() -> lockBoth(pen, paper, bothHoldOne), "Pen-first");
+        Thread paperFirst = new Thread(() -> lockBoth(paper, pen, bothHoldOne), "Paper-first");
+        penFirst.start();
+        paperFirst.start();
+        if (!found.await(5, TimeUnit.SECONDS)) System.out.println("no cycle reported");
+        penFirst.interrupt(); // lockInterruptibly lets both give up
+        paperFirst.interrupt();
+        penFirst.join();
+        paperFirst.join();
+        detector.interrupt();
+    }
+
+    private static void lockBoth(Lock first, Lock second, CountDownLatch bothHoldOne) {
+        first.lock();
+        try {
+            bothHoldOne.countDown();
+            bothHoldOne.await();
+            second.lockInterruptibly();
+            second.unlock();
+        } catch (InterruptedException e) {
+            System.out.println(Thread.currentThread().getName() + " interrupted, backing out");
+        } finally {
+            first.unlock();
+        }
+    }
+}
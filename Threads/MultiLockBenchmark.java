@@ -0,0 +1,149 @@
+/*
+
+MULTI-LOCK STRESS BENCHMARK
+--------------------------------------------------
+
+Every operation takes a set of locks through MultiLock.acquireAll, bumps a counter per
+lock and does WORK iterations of busy work while holding them (-Dwork=N, default 200).
+
+scenarios:
+* pen/paper      : 2 locks, even threads ask for (pen, paper), odd ones for (paper, pen)
+* 2 of 8         : 2 random distinct locks out of 8, in random order
+* 4 of 16        : 4 random distinct locks out of 16, in random order
+
+strategies:
+* ordered        : Strategy.ORDERED (global order, blocking lock())
+* retry+backoff  : Strategy.RETRY, randomised exponential backoff capped at 1 ms
+* retry+yield    : Strategy.RETRY, Thread.yield() between attempts (the plain tryLock loop)
+
+ops/s and retries per op over MEASURE_MILLIS after a warm-up round; the per-lock counters
+are checked against the ops done.
+
+javac MultiLock.java MultiLockBenchmark.java
+java [-Dwork=N] MultiLockBenchmark [maxThreads]
+
+*/
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+class MultiLockBenchmark {
+    private static final long WARMUP_MILLIS = 300;
+    private static final long MEASURE_MILLIS = 1000;
+    private static final int WORK = Integer.getInteger("work", 200);
+
+    private record Scenario(String name, int locks, int perOp, boolean penPaper) {
+    }
+
+    private record Result(double opsPerSecond, double retriesPerOp) {
+    }
+
+    private static volatile long sink;
+
+    private static Result run(Scenario scenario, MultiLock multiLock, int threads, long millis)
+            throws InterruptedException {
+        Lock[] locks = new Lock[scenario.locks()];
+        long[] counters = new long[scenario.locks()];
+        for (int i = 0; i < locks.length; i++) locks[i] = new ReentrantLock();
+        LongAdder ops = new LongAdder();
+        long retriesBefore = multiLock.retries();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        for (int t = 0; t < threads; t++) {
+            boolean reversed = t % 2 == 1;
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int[] picked = new int[scenario.perOp()];
+                Lock[] wanted = new Lock[scenario.perOp()];
+                long local = 0;
+                try {
+                    start.await();
+                    while (System.nanoTime() < deadline) {
+                        pick(scenario, reversed, random, picked);
+                        for (int i = 0; i < picked.length; i++) wanted[i] = locks[picked[i]];
+                        MultiLock.Held held = multiLock.acquireAll(wanted);
+                        try {
+                            long x = 1;
+                            for (int w = 0; w < WORK; w++) x = x * 31 + w;
+                            for (int index : picked) counters[index]++;
+                            sink = x;
+                        } finally {
+                            held.close();
+                        }
+                        local++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    ops.add(local);
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        long total = 0;
+        for (long counter : counters) total += counter;
+        if (total != ops.sum() * scenario.perOp()) {
+            System.out.println("  !! counters " + total + ", expected " + ops.sum() * scenario.perOp());
+        }
+        return new Result(ops.sum() * 1e9 / elapsed, (double) (multiLock.retries() - retriesBefore) / ops.sum());
+    }
+
+    private static void pick(Scenario scenario, boolean reversed, ThreadLocalRandom random, int[] picked) {
+        if (scenario.penPaper()) {
+            picked[0] = reversed ? 1 : 0;
+            picked[1] = reversed ? 0 : 1;
+            return;
+        }
+        for (int i = 0; i < picked.length; i++) {
+            int candidate;
+            boolean taken;
+            do {
+                candidate = random.nextInt(scenario.locks());
+                taken = false;
+                for (int j = 0; j < i; j++) taken |= picked[j] == candidate;
+            } while (taken);
+            picked[i] = candidate;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors() + ", " + MEASURE_MILLIS + " ms per cell");
+        Scenario[] scenarios = {
+                new Scenario("pen/paper", 2, 2, true),
+                new Scenario("2 of 8", 8, 2, false),
+                new Scenario("4 of 16", 16, 4, false),
+        };
+        String[] names = {"ordered", "retry+backoff", "retry+yield"};
+        List<Supplier<MultiLock>> strategies = List.of(
+                MultiLock::new,
+                () -> new MultiLock(MultiLock.Strategy.RETRY, 1, TimeUnit.MILLISECONDS),
+                () -> new MultiLock(MultiLock.Strategy.RETRY, 0, TimeUnit.MILLISECONDS));
+        for (Scenario scenario : scenarios) {
+            System.out.println(scenario.name());
+            System.out.printf("  %-8s", "threads");
+            for (String name : names) System.out.printf(" %28s", name + " ops/s, retries/op");
+            System.out.println();
+            for (int threads = 2; threads <= maxThreads; threads *= 2) {
+                System.out.printf("  %-8d", threads);
+                for (Supplier<MultiLock> strategy : strategies) {
+                    run(scenario, strategy.get(), threads, WARMUP_MILLIS);
+                    Result result = run(scenario, strategy.get(), threads, MEASURE_MILLIS);
+                    System.out.printf(" %,18.0f %9.3f", result.opsPerSecond(), result.retriesPerOp());
+                }
+                System.out.println();
+            }
+        }
+    }
+}
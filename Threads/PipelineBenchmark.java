@@ -0,0 +1,108 @@
+/*
+
+BARRIER PHASES vs STAGED PIPELINE ON SKEWED ITEMS
+--------------------------------------------------
+
+Every item goes through two phases. Phase cost is skewed: most items take FAST_MICROS,
+SLOW_FRACTION of them take SLOW_MICROS (independently per phase). Work is simulated
+with parkNanos, like the sleeps in DataProcessingPipeline, so the comparison is about
+waiting structure rather than CPU count.
+
+* barrier           : WORKERS threads; in each round every worker takes one item,
+                      runs phase 1, waits at a CyclicBarrier, runs phase 2, waits again
+* pipeline W/2+W/2  : StagedPipeline, same thread count split across the two stages
+* pipeline W+W      : StagedPipeline, WORKERS threads per stage
+
+java PipelineBenchmark [items] [workers]
+
+*/
+
+import java.util.SplittableRandom;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.locks.LockSupport;
+
+class PipelineBenchmark {
+    private static final long FAST_MICROS = 200;
+    private static final long SLOW_MICROS = 5_000;
+    private static final double SLOW_FRACTION = 0.05;
+
+    private static long[][] costs(int items) {
+        SplittableRandom random = new SplittableRandom(42);
+        long[][] costs = new long[items][2];
+        for (long[] item : costs) {
+            for (int phase = 0; phase < 2; phase++) {
+                item[phase] = (random.nextDouble() < SLOW_FRACTION ? SLOW_MICROS : FAST_MICROS) * 1000;
+            }
+        }
+        return costs;
+    }
+
+    private static void work(long nanos) {
+        long end = System.nanoTime() + nanos;
+        for (long left = nanos; left > 0; left = end - System.nanoTime()) LockSupport.parkNanos(left);
+    }
+
+    private static long barrier(long[][] costs, int workers) throws InterruptedException {
+        CyclicBarrier barrier = new CyclicBarrier(workers);
+        Thread[] threads = new Thread[workers];
+        int rounds = costs.length / workers;
+        long start = System.nanoTime();
+        for (int w = 0; w < workers; w++) {
+            int id = w;
+            threads[w] = new Thread(() -> {
+                try {
+                    for (int round = 0; round < rounds; round++) {
+                        long[] item = costs[round * workers + id];
+                        work(item[0]);
+                        barrier.await();
+                        work(item[1]);
+                        barrier.await();
+                    }
+                } catch (InterruptedException | BrokenBarrierException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[w].start();
+        }
+        for (Thread thread : threads) thread.join();
+        return System.nanoTime() - start;
+    }
+
+    private static long pipeline(long[][] costs, int phase1Workers, int phase2Workers, boolean printStats)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        StagedPipeline<long[]> pipeline = StagedPipeline.<long[]>builder()
+                .then("phase1", phase1Workers, 64, (long[] item) -> {
+                    work(item[0]);
+                    return item;
+                })
+                .then("phase2", phase2Workers, 64, (long[] item) -> {
+                    work(item[1]);
+                    return item;
+                })
+                .start(item -> {});
+        for (long[] item : costs) pipeline.submit(item);
+        pipeline.close();
+        long elapsed = System.nanoTime() - start;
+        if (printStats) pipeline.stats().forEach(stats -> System.out.println("    " + stats));
+        return elapsed;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int items = args.length > 0 ? Integer.parseInt(args[0]) : 4_000;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        long[][] costs = costs(items - items % workers);
+        long totalWork = 0;
+        for (long[] item : costs) totalWork += item[0] + item[1];
+        System.out.printf("%d items, %d workers, phase cost %d us (%.0f%% take %d us), ideal with %d threads: %.0f ms%n",
+                costs.length, workers, FAST_MICROS, SLOW_FRACTION * 100, SLOW_MICROS, workers,
+                totalWork / 1e6 / workers);
+
+        barrier(costs, workers); // warm-up
+        System.out.printf("  %-20s %8.0f ms%n", "barrier", barrier(costs, workers) / 1e6);
+        System.out.printf("  %-20s %8.0f ms%n", "pipeline W/2+W/2",
+                pipeline(costs, workers / 2, workers - workers / 2, false) / 1e6);
+        System.out.printf("  %-20s %8.0f ms%n", "pipeline W+W", pipeline(costs, workers, workers, true) / 1e6);
+    }
+}
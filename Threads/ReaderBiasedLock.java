@@ -0,0 +1,406 @@
+/*
+
+READER-BIASED READ-WRITE LOCK (BRAVO)
+--------------------------------------------------
+
+ReentrantReadWriteLock counts readers in one shared word: every readLock()/unlock() is a
+CAS on the same cache line, so read-only traffic from many cores still serialises on it.
+
+BRAVO (Biased Locking for Reader-Writer Locks) wraps any ReadWriteLock:
+
+* rbias on   : a reader hashes (lock, thread) into a global table of padded slots and CASes
+               the lock into its slot - no write to anything shared with other readers.
+               It re-checks rbias afterwards; if a writer revoked meanwhile it backs out.
+* rbias off  : readers use the underlying read lock. A slow reader turns rbias back on,
+               unless revocation is still inhibited (see below).
+* writer     : takes the underlying write lock (blocks new slow readers), clears rbias
+               (no new fast readers), then waits until no slot holds this lock.
+               Revocation scans the whole table, so afterwards bias stays off for
+               INHIBIT_FACTOR x the time the scan took - writers pay at most ~1/(N+1)
+               of their time for it.
+
+Reader ---------------> rbias? --yes--> CAS slot --> rbias still on? --yes--> read
+                          | no                              | no: clear slot
+                          v                                 v
+                    underlying readLock  <------------------+
+
+Drop-in for java.util.concurrent.locks.ReadWriteLock. Reentrant: a nested read of a thread
+that already holds a fast read just counts on it (the slot keeps writers out already - going
+to the underlying lock could queue behind a writer that is waiting for this very slot);
+otherwise nesting, write -> read reentry and downgrading work as in the wrapped lock, and
+bias is never turned back on while the write lock is held. Conditions of the write lock
+re-run revocation after every await().
+
+*/
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+class ReaderBiasedLock implements ReadWriteLock {
+    private static final int SLOTS = 1024;
+    private static final int STRIDE = 16; // references per slot: one slot per 64-byte line
+    private static final int INHIBIT_FACTOR = 9;
+    // shared by every ReaderBiasedLock, like the visible-readers table in the BRAVO paper
+    private static final AtomicReferenceArray<ReaderBiasedLock> VISIBLE_READERS =
+            new AtomicReferenceArray<>(SLOTS * STRIDE);
+
+    // which of this thread's read holds went through a slot
+    private static final class ReadHolds {
+        int depth;
+        int fastDepth; // depth at which the fast hold was taken, 0 = none
+        int slot;
+    }
+
+    private final ReadWriteLock underlying;
+    private final ThreadLocal<ReadHolds> holds = ThreadLocal.withInitial(ReadHolds::new);
+    private final Lock readLock = new ReadLock();
+    private final Lock writeLock = new WriteLock();
+    private volatile boolean rbias = true;
+    private volatile long inhibitUntil;
+    // written only by the write lock's holder, so a thread comparing it with itself reads its own writes
+    private volatile Thread writeOwner;
+    private int writeDepth;
+
+    ReaderBiasedLock() {
+        this(new ReentrantReadWriteLock());
+    }
+
+    ReaderBiasedLock(ReadWriteLock underlying) {
+        this.underlying = underlying;
+    }
+
+    @Override
+    public Lock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writeLock;
+    }
+
+    boolean isReadBiased() {
+        return rbias;
+    }
+
+    private int slotFor(Thread thread) {
+        int h = System.identityHashCode(this) * 31 + Long.hashCode(thread.getId());
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        h ^= h >>> 16;
+        return (h & (SLOTS - 1)) * STRIDE;
+    }
+
+    // ---- readers ----
+
+    private boolean tryFastRead(ReadHolds held) {
+        if (!rbias || held.fastDepth != 0) return false;
+        int slot = slotFor(Thread.currentThread());
+        if (!VISIBLE_READERS.compareAndSet(slot, null, this)) return false; // collision
+        if (rbias) {
+            held.fastDepth = held.depth + 1;
+            held.slot = slot;
+            return true;
+        }
+        VISIBLE_READERS.set(slot, null); // a writer revoked between our check and our CAS
+        return false;
+    }
+
+    // called while holding the underlying read lock: the only writer that can be inside is this
+    // thread (write -> read reentry or a downgrade), and then bias has to stay off
+    private void maybeRestoreBias() {
+        if (!rbias && writeOwner != Thread.currentThread() && System.nanoTime() - inhibitUntil >= 0) rbias = true;
+    }
+
+    // a nested read on top of this thread's fast hold needs no lock at all
+    private static boolean reenterFast(ReadHolds held) {
+        if (held.fastDepth == 0) return false;
+        held.depth++;
+        return true;
+    }
+
+    private final class ReadLock implements Lock {
+        @Override
+        public void lock() {
+            ReadHolds held = holds.get();
+            if (reenterFast(held)) return;
+            if (!tryFastRead(held)) {
+                underlying.readLock().lock();
+                maybeRestoreBias();
+            }
+            held.depth++;
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            if (Thread.interrupted()) throw new InterruptedException();
+            ReadHolds held = holds.get();
+            if (reenterFast(held)) return;
+            if (!tryFastRead(held)) {
+                underlying.readLock().lockInterruptibly();
+                maybeRestoreBias();
+            }
+            held.depth++;
+        }
+
+        @Override
+        public boolean tryLock() {
+            ReadHolds held = holds.get();
+            if (reenterFast(held)) return true;
+            if (!tryFastRead(held)) {
+                if (!underlying.readLock().tryLock()) return false;
+                maybeRestoreBias();
+            }
+            held.depth++;
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            ReadHolds held = holds.get();
+            if (reenterFast(held)) return true;
+            if (!tryFastRead(held)) {
+                if (!underlying.readLock().tryLock(time, unit)) return false;
+                maybeRestoreBias();
+            }
+            held.depth++;
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            ReadHolds held = holds.get();
+            if (held.depth == 0) throw new IllegalMonitorStateException("read lock not held");
+            if (held.fastDepth == held.depth) {
+                VISIBLE_READERS.set(held.slot, null);
+                held.fastDepth = 0;
+            } else if (held.fastDepth == 0 || held.depth < held.fastDepth) {
+                underlying.readLock().unlock();
+            } // else: nested on the fast hold, nothing to release
+            held.depth--;
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("read locks have no conditions");
+        }
+    }
+
+    // ---- writers ----
+
+    // caller holds the underlying write lock: no slow reader inside, no new fast reader after rbias = false
+    private void revokeBias() {
+        if (!rbias) return;
+        rbias = false;
+        long start = System.nanoTime();
+        for (int slot = 0; slot < SLOTS * STRIDE; slot += STRIDE) {
+            while (VISIBLE_READERS.get(slot) == this) Thread.onSpinWait();
+        }
+        long now = System.nanoTime();
+        inhibitUntil = now + (now - start) * INHIBIT_FACTOR;
+    }
+
+    // caller just got the underlying write lock
+    private void acquiredWrite() {
+        if (writeDepth++ == 0) writeOwner = Thread.currentThread();
+        revokeBias();
+    }
+
+    private final class WriteLock implements Lock {
+        @Override
+        public void lock() {
+            underlying.writeLock().lock();
+            acquiredWrite();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            underlying.writeLock().lockInterruptibly();
+            acquiredWrite();
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!underlying.writeLock().tryLock()) return false;
+            acquiredWrite();
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            if (!underlying.writeLock().tryLock(time, unit)) return false;
+            acquiredWrite();
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            if (writeOwner != Thread.currentThread()) throw new IllegalMonitorStateException("write lock not held");
+            if (--writeDepth == 0) writeOwner = null;
+            underlying.writeLock().unlock();
+        }
+
+        @Override
+        public Condition newCondition() {
+            return new RevokingCondition(underlying.writeLock().newCondition());
+        }
+    }
+
+    // await() gives the write lock up and takes it back: ownership is handed back and forth with it,
+    // and bias may have come back meanwhile
+    private final class RevokingCondition implements Condition {
+        private final Condition delegate;
+
+        RevokingCondition(Condition delegate) {
+            this.delegate = delegate;
+        }
+
+        private int release() {
+            if (writeOwner != Thread.currentThread()) throw new IllegalMonitorStateException("write lock not held");
+            int depth = writeDepth;
+            writeDepth = 0;
+            writeOwner = null;
+            return depth;
+        }
+
+        private void reacquired(int depth) {
+            writeDepth = depth;
+            writeOwner = Thread.currentThread();
+            revokeBias();
+        }
+
+        @Override
+        public void await() throws InterruptedException {
+            int depth = release();
+            try {
+                delegate.await();
+            } finally {
+                reacquired(depth);
+            }
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            int depth = release();
+            delegate.awaitUninterruptibly();
+            reacquired(depth);
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            int depth = release();
+            try {
+                return delegate.awaitNanos(nanosTimeout);
+            } finally {
+                reacquired(depth);
+            }
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            int depth = release();
+            try {
+                return delegate.await(time, unit);
+            } finally {
+                reacquired(depth);
+            }
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            int depth = release();
+            try {
+                return delegate.awaitUntil(deadline);
+            } finally {
+                reacquired(depth);
+            }
+        }
+
+        @Override
+        public void signal() {
+            delegate.signal();
+        }
+
+        @Override
+        public void signalAll() {
+            delegate.signalAll();
+        }
+    }
+
+    // Writer keeps x == y; readers (mostly on the fast path) must never see them differ
+    public static void main(String[] args) throws InterruptedException {
+        ReadWriteLock lock = new ReaderBiasedLock();
+        long[] point = new long[2];
+        long[] torn = new long[1];
+        long[] reads = new long[4];
+        Thread[] readers = new Thread[4];
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        for (int r = 0; r < readers.length; r++) {
+            int id = r;
+            readers[r] = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    lock.readLock().lock();
+                    try {
+                        if (point[0] != point[1]) torn[0]++;
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                    reads[id]++;
+                }
+            });
+            readers[r].start();
+        }
+        long writes = 0;
+        while (System.nanoTime() < end) {
+            lock.writeLock().lock();
+            try {
+                point[0]++;
+                point[1]++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            writes++;
+            Thread.sleep(1);
+        }
+        for (Thread reader : readers) reader.join();
+        System.out.println("reads: " + (reads[0] + reads[1] + reads[2] + reads[3]) + ", writes: " + writes
+                + ", torn reads: " + torn[0]);
+
+        // write -> read reentry after the inhibit window must not let other readers in
+        ReaderBiasedLock biased = new ReaderBiasedLock();
+        biased.writeLock().lock();
+        Thread.sleep(5);
+        biased.readLock().lock();
+        biased.readLock().unlock();
+        boolean[] otherRead = new boolean[1];
+        Thread other = new Thread(() -> {
+            otherRead[0] = biased.readLock().tryLock();
+            if (otherRead[0]) biased.readLock().unlock();
+        });
+        other.start();
+        other.join();
+        biased.writeLock().unlock();
+        System.out.println("reader got in during a write: " + otherRead[0]);
+
+        // a nested read on a fast hold must not queue behind a writer waiting for that hold
+        biased.readLock().lock(); // slow read: turns bias back on
+        biased.readLock().unlock();
+        biased.readLock().lock(); // fast
+        Thread writer = new Thread(() -> {
+            biased.writeLock().lock();
+            biased.writeLock().unlock();
+        });
+        writer.start();
+        Thread.sleep(50); // writer now holds the underlying write lock and waits for our slot
+        boolean nested = biased.readLock().tryLock(2, TimeUnit.SECONDS);
+        if (nested) biased.readLock().unlock();
+        biased.readLock().unlock();
+        writer.join();
+        System.out.println("nested read while a writer waits: " + nested);
+    }
+}
@@ -51,6 +51,10 @@ Thread-4 (withdrawWithInterruptible)
                             ---> Withdraws $300
                                   ---> Releases lock (finally)
 
+One lock per balance is fine for a single account. For a ledger (many accounts, transfers
+between them) see TransferEngine: striped locks taken in a fixed order, lock-free debits
+and a batched journal.
+
 */
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
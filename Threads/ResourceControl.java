@@ -26,6 +26,9 @@ BLOCKED = waiting on semaphore due to no available permits.
 
 POISON_PILL is used to gracefully shut down the consumers.
 
+ResourcePool.java turns the Semaphore into a reusable pool: leases with timeouts,
+per-priority reservations, wait-time histograms and optional CoDel load shedding.
+
 
 ---
 
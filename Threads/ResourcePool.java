@@ -0,0 +1,397 @@
+/*
+
+RESOURCE POOL (leases, timeouts, reservations, wait histograms, CoDel)
+--------------------------------------------------
+
+ResourceControl guards its "database connections" with a bare fair Semaphore:
+* acquire() waits forever, nobody knows how long a consumer waited
+* every consumer competes for the same permits, so a flood of background work
+  starves the important requests
+* shutdown needs a POISON_PILL per consumer
+
+ResourcePool hands out the resources themselves as leases:
+
+    try (ResourcePool.Lease<Connection> lease = pool.acquire(Priority.HIGH, 200, MILLISECONDS)) {
+        use(lease.resource());
+    }                                       // close() gives the resource back
+
+* acquire(priority, timeout) - TimeoutException when no resource arrives in time
+* reservations               - reserve(HIGH, 1) keeps one resource that only HIGH can use;
+                               the rest are shared by every class
+* fair queuing               - a free shared resource goes to the oldest waiter, whatever
+                               its class; a released resource is handed straight to that
+                               waiter, so late arrivals can't barge in
+* wait-time histograms       - one per class, log2 buckets in microseconds (stats())
+* CoDel (optional)           - if every acquire in the last interval waited longer than
+                               the target, the queue is standing rather than absorbing a burst;
+                               while that holds, new waiters only wait up to the target and
+                               then get a RejectedExecutionException instead of piling up
+* close()                    - wakes every waiter with RejectedExecutionException, leases
+                               already handed out can still be closed
+
+*/
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+class ResourcePool<R> implements AutoCloseable {
+
+    enum Priority { HIGH, NORMAL, LOW }
+
+    static final class Lease<R> implements AutoCloseable {
+        private final ResourcePool<R> pool;
+        private final R resource;
+        private final Priority reservedFor; // null = came from the shared permits
+        private boolean released;           // guarded by pool.lock
+
+        private Lease(ResourcePool<R> pool, R resource, Priority reservedFor) {
+            this.pool = pool;
+            this.resource = resource;
+            this.reservedFor = reservedFor;
+        }
+
+        R resource() {
+            return resource;
+        }
+
+        /** Gives the resource back; calling it again does nothing. */
+        @Override
+        public void close() {
+            pool.release(this);
+        }
+    }
+
+    record ClassStats(Priority priority, int reserved, long acquired, long timedOut, long rejected,
+                      double p50Micros, double p99Micros, double maxMicros) {
+        @Override
+        public String toString() {
+            return String.format("%-6s reserved %d  acquired %6d  timed out %5d  rejected %5d  wait p50 <=%8.0f us"
+                            + "  p99 <=%8.0f us  max %8.0f us", priority, reserved, acquired, timedOut, rejected,
+                    p50Micros, p99Micros, maxMicros);
+        }
+    }
+
+    // log2 buckets: bucket b counts waits in [2^(b-1), 2^b) microseconds, bucket 0 is "no wait"
+    private static final class WaitHistogram {
+        final long[] buckets = new long[40];
+        long count;
+        long maxNanos;
+
+        void record(long nanos) {
+            long micros = nanos / 1000;
+            buckets[Math.min(buckets.length - 1, 64 - Long.numberOfLeadingZeros(micros))]++;
+            count++;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        // upper bound of the bucket holding the p-th wait, never above the largest wait seen
+        double percentileMicros(double p) {
+            long rank = (long) Math.ceil(p * count);
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b];
+                if (seen >= rank && seen > 0) return b == 0 ? 0 : Math.min(1L << b, maxNanos / 1e3);
+            }
+            return 0;
+        }
+    }
+
+    // Controlled Delay: look at the smallest wait of each interval
+    private static final class CoDel {
+        final long targetNanos;
+        final long intervalNanos;
+        long intervalEnd;
+        long minDelay = Long.MAX_VALUE;
+        boolean overloaded;
+
+        CoDel(long targetNanos, long intervalNanos) {
+            this.targetNanos = targetNanos;
+            this.intervalNanos = intervalNanos;
+            this.intervalEnd = System.nanoTime() + intervalNanos;
+        }
+
+        void onGrant(long waitedNanos, long now, boolean queued) {
+            roll(now, queued);
+            minDelay = Math.min(minDelay, waitedNanos);
+        }
+
+        boolean overloaded(long now, boolean queued) {
+            roll(now, queued);
+            return overloaded;
+        }
+
+        private void roll(long now, boolean queued) {
+            if (now - intervalEnd < 0) return;
+            // nobody got a resource for a whole interval while others were queued: that is overload too
+            overloaded = minDelay == Long.MAX_VALUE ? queued : minDelay > targetNanos;
+            minDelay = Long.MAX_VALUE;
+            intervalEnd = now + intervalNanos;
+        }
+    }
+
+    private static final class Waiter<R> {
+        final Priority priority;
+        final long since;
+        final Condition granted;
+        Lease<R> lease;
+
+        Waiter(Priority priority, long since, Condition granted) {
+            this.priority = priority;
+            this.since = since;
+            this.granted = granted;
+        }
+    }
+
+    // ---- building ----
+
+    static final class Builder<R> {
+        private final List<R> resources;
+        private final EnumMap<Priority, Integer> reserved = new EnumMap<>(Priority.class);
+        private CoDel codel;
+
+        private Builder(Collection<? extends R> resources) {
+            this.resources = new ArrayList<>(resources);
+        }
+
+        Builder<R> reserve(Priority priority, int count) {
+            reserved.put(priority, count);
+            return this;
+        }
+
+        Builder<R> codel(long target, long interval, TimeUnit unit) {
+            codel = new CoDel(unit.toNanos(target), unit.toNanos(interval));
+            return this;
+        }
+
+        ResourcePool<R> build() {
+            return new ResourcePool<>(resources, reserved, codel);
+        }
+    }
+
+    static <R> Builder<R> builder(Collection<? extends R> resources) {
+        return new Builder<>(resources);
+    }
+
+    // ---- state, all guarded by lock ----
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<R> idle;
+    private final int[] reserved = new int[PRIORITIES.length];
+    private final int[] freeReserved = new int[PRIORITIES.length];
+    private int freeShared;
+    private final List<ArrayDeque<Waiter<R>>> waiters = new ArrayList<>();
+    private final WaitHistogram[] histograms = new WaitHistogram[PRIORITIES.length];
+    private final long[] timedOut = new long[PRIORITIES.length];
+    private final long[] rejected = new long[PRIORITIES.length];
+    private final CoDel codel;
+    private int queued;
+    private boolean closed;
+
+    private ResourcePool(List<R> resources, Map<Priority, Integer> reservations, CoDel codel) {
+        this.idle = new ArrayDeque<>(resources);
+        this.codel = codel;
+        int shared = resources.size();
+        for (Priority priority : PRIORITIES) {
+            int count = reservations.getOrDefault(priority, 0);
+            reserved[priority.ordinal()] = freeReserved[priority.ordinal()] = count;
+            shared -= count;
+            waiters.add(new ArrayDeque<>());
+            histograms[priority.ordinal()] = new WaitHistogram();
+        }
+        if (shared < 0) throw new IllegalArgumentException("more reservations than resources");
+        this.freeShared = shared;
+    }
+
+    Lease<R> acquire(Priority priority, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        int p = priority.ordinal();
+        lock.lockInterruptibly();
+        try {
+            if (closed) throw new RejectedExecutionException("pool is closed");
+            long now = System.nanoTime();
+            // Free permits imply nobody of this class is queued (release hands over directly)
+            Lease<R> lease = tryTake(priority);
+            if (lease != null) {
+                granted(priority, 0, now);
+                return lease;
+            }
+
+            boolean shedding = codel != null && codel.overloaded(now, queued > 0);
+            long remaining = shedding ? Math.min(unit.toNanos(timeout), codel.targetNanos) : unit.toNanos(timeout);
+            Waiter<R> waiter = new Waiter<>(priority, now, lock.newCondition());
+            waiters.get(p).add(waiter);
+            queued++;
+            try {
+                while (waiter.lease == null && !closed && remaining > 0) {
+                    remaining = waiter.granted.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.lease != null) releaseLocked(waiter.lease);
+                else dequeue(waiter);
+                throw e;
+            }
+            if (waiter.lease != null) return waiter.lease;
+
+            dequeue(waiter);
+            if (closed) throw new RejectedExecutionException("pool is closed");
+            if (shedding) {
+                rejected[p]++;
+                throw new RejectedExecutionException("queueing delay above " + codel.targetNanos / 1000 + " us");
+            }
+            timedOut[p]++;
+            throw new TimeoutException(priority + " waited " + unit.toMillis(timeout) + " ms for a resource");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Lease<R> tryTake(Priority priority) {
+        int p = priority.ordinal();
+        if (freeReserved[p] > 0) {
+            freeReserved[p]--;
+            return new Lease<>(this, idle.poll(), priority);
+        }
+        if (freeShared > 0) {
+            freeShared--;
+            return new Lease<>(this, idle.poll(), null);
+        }
+        return null;
+    }
+
+    private void dequeue(Waiter<R> waiter) {
+        waiters.get(waiter.priority.ordinal()).remove(waiter);
+        queued--;
+    }
+
+    private void granted(Priority priority, long waitedNanos, long now) {
+        histograms[priority.ordinal()].record(waitedNanos);
+        if (codel != null) codel.onGrant(waitedNanos, now, queued > 0);
+    }
+
+    private void release(Lease<R> lease) {
+        lock.lock();
+        try {
+            releaseLocked(lease);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLocked(Lease<R> lease) {
+        if (lease.released) return;
+        lease.released = true;
+
+        Waiter<R> next;
+        if (lease.reservedFor != null) {
+            next = waiters.get(lease.reservedFor.ordinal()).peek();
+        } else {
+            next = null; // shared resource: oldest head over all classes
+            for (ArrayDeque<Waiter<R>> queue : waiters) {
+                Waiter<R> head = queue.peek();
+                if (head != null && (next == null || head.since - next.since < 0)) next = head;
+            }
+        }
+        if (next == null || closed) {
+            idle.push(lease.resource);
+            if (lease.reservedFor != null) freeReserved[lease.reservedFor.ordinal()]++;
+            else freeShared++;
+            return;
+        }
+        dequeue(next);
+        next.lease = new Lease<>(this, lease.resource, lease.reservedFor);
+        long now = System.nanoTime();
+        granted(next.priority, now - next.since, now);
+        next.granted.signal();
+    }
+
+    /** Rejects every waiting and future acquire; outstanding leases can still be closed. */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (ArrayDeque<Waiter<R>> queue : waiters) {
+                for (Waiter<R> waiter : queue) waiter.granted.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    List<ClassStats> stats() {
+        lock.lock();
+        try {
+            List<ClassStats> result = new ArrayList<>();
+            for (Priority priority : PRIORITIES) {
+                int p = priority.ordinal();
+                WaitHistogram histogram = histograms[p];
+                result.add(new ClassStats(priority, reserved[p], histogram.count, timedOut[p], rejected[p],
+                        histogram.percentileMicros(0.50), histogram.percentileMicros(0.99),
+                        histogram.maxNanos / 1e3));
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ResourceControl's three connections: first a light load, then a LOW flood with CoDel on
+    public static void main(String[] args) throws InterruptedException {
+        List<String> connections = List.of("conn-1", "conn-2", "conn-3");
+
+        System.out.println("--- 5 consumers, 3 connections, 1 reserved for HIGH, 500 ms timeout ---");
+        ResourcePool<String> pool = ResourcePool.builder(connections).reserve(Priority.HIGH, 1).build();
+        runConsumers(pool, 5, 4, 100, 300, true);
+        pool.close();
+        pool.stats().forEach(System.out::println);
+
+        System.out.println("--- 30 LOW + 2 HIGH consumers, CoDel target 20 ms / interval 100 ms ---");
+        ResourcePool<String> overloaded = ResourcePool.builder(connections).reserve(Priority.HIGH, 1)
+                .codel(20, 100, TimeUnit.MILLISECONDS).build();
+        runConsumers(overloaded, 32, 40, 10, 30, false);
+        overloaded.close();
+        overloaded.stats().forEach(System.out::println);
+    }
+
+    private static void runConsumers(ResourcePool<String> pool, int consumers, int tasksEach, int minHoldMillis,
+                                     int maxHoldMillis, boolean verbose) throws InterruptedException {
+        AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[consumers];
+        for (int i = 0; i < consumers; i++) {
+            int consumerId = i;
+            Priority priority = i % 16 == 0 ? Priority.HIGH : consumers > 8 ? Priority.LOW : Priority.NORMAL;
+            threads[i] = new Thread(() -> {
+                for (int task = 0; task < tasksEach; task++) {
+                    try (Lease<String> lease = pool.acquire(priority, 500, TimeUnit.MILLISECONDS)) {
+                        if (verbose) {
+                            System.out.println("Consumer " + consumerId + " (" + priority + ") got " + lease.resource());
+                        }
+                        Thread.sleep(ThreadLocalRandom.current().nextInt(minHoldMillis, maxHoldMillis));
+                    } catch (TimeoutException | RejectedExecutionException e) {
+                        failures.incrementAndGet();
+                        if (verbose) System.out.println("Consumer " + consumerId + " gave up: " + e.getMessage());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) thread.join();
+        System.out.println(failures.get() + " acquires failed");
+    }
+}
@@ -0,0 +1,244 @@
+/*
+
+STAGED PIPELINE (no global barrier)
+--------------------------------------------------
+
+DataProcessingPipeline runs every worker through phase 1, waits at a CyclicBarrier,
+runs phase 2, waits again. Each phase lasts as long as its slowest worker, so with
+skewed item costs most workers sit at the barrier.
+
+StagedPipeline turns every phase into a stage with its own worker count, connected
+by bounded queues:
+
+    submit() --> [queue] --> stage "parse" (2 workers) --> [queue] --> stage "store" (4 workers) --> sink
+
+* an item moves to the next stage as soon as its own work is done
+* a full queue blocks the stage in front of it (backpressure travels upstream
+  until submit() blocks)
+* close() sends an end marker through every stage and waits for all workers
+
+Per-stage metrics (stats()):
+* processed / failed items
+* utilisation  = busy time / (workers x elapsed)      - who is the bottleneck
+* backpressure = time upstream spent blocked putting into this stage's queue
+* starved      = time this stage's workers spent waiting for input
+* queue depth
+
+*/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+class StagedPipeline<I> implements AutoCloseable {
+    private static final Object END = new Object();
+
+    record StageStats(String name, int workers, long processed, long failed, double utilisation,
+                      long backpressureMillis, long starvedMillis, int queueDepth, int queueCapacity) {
+        @Override
+        public String toString() {
+            return String.format("%-8s workers %2d  processed %7d  failed %3d  util %5.1f%%  backpressure %6d ms"
+                            + "  starved %6d ms  queue %4d/%d", name, workers, processed, failed, utilisation * 100,
+                    backpressureMillis, starvedMillis, queueDepth, queueCapacity);
+        }
+    }
+
+    private static final class Stage {
+        final String name;
+        final int workers;
+        final Function<Object, Object> work;
+        final BlockingQueue<Object> input;
+        final AtomicInteger alive;
+        final LongAdder processed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder busyNanos = new LongAdder();
+        final LongAdder blockedPutNanos = new LongAdder();
+        final LongAdder starvedNanos = new LongAdder();
+        Stage next;
+
+        Stage(String name, int workers, int capacity, Function<Object, Object> work) {
+            this.name = name;
+            this.workers = workers;
+            this.work = work;
+            this.input = new ArrayBlockingQueue<>(capacity);
+            this.alive = new AtomicInteger(workers);
+        }
+
+        // offer first, so the uncontended path pays no clock reads
+        void put(Object item) throws InterruptedException {
+            if (input.offer(item)) return;
+            long start = System.nanoTime();
+            input.put(item);
+            blockedPutNanos.add(System.nanoTime() - start);
+        }
+
+        Object take() throws InterruptedException {
+            Object item = input.poll();
+            if (item != null) return item;
+            long start = System.nanoTime();
+            item = input.take();
+            starvedNanos.add(System.nanoTime() - start);
+            return item;
+        }
+    }
+
+    // ---- building ----
+
+    static final class Builder<I, O> {
+        private final List<Stage> stages;
+
+        private Builder(List<Stage> stages) {
+            this.stages = stages;
+        }
+
+        @SuppressWarnings("unchecked")
+        <R> Builder<I, R> then(String name, int workers, int queueCapacity, Function<? super O, ? extends R> work) {
+            List<Stage> next = new ArrayList<>(stages);
+            next.add(new Stage(name, workers, queueCapacity, (Function<Object, Object>) work));
+            return new Builder<>(next);
+        }
+
+        @SuppressWarnings("unchecked")
+        StagedPipeline<I> start(Consumer<? super O> sink) {
+            return new StagedPipeline<>(stages, (Consumer<Object>) sink);
+        }
+    }
+
+    static <I> Builder<I, I> builder() {
+        return new Builder<>(List.of());
+    }
+
+    // ---- running ----
+
+    private final List<Stage> stages;
+    private final Consumer<Object> sink;
+    private final List<Thread> threads = new ArrayList<>();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean closed;
+    private volatile long endNanos;
+
+    private StagedPipeline(List<Stage> stages, Consumer<Object> sink) {
+        if (stages.isEmpty()) throw new IllegalArgumentException("a pipeline needs at least one stage");
+        this.stages = stages;
+        this.sink = sink;
+        for (int s = 0; s < stages.size(); s++) {
+            Stage stage = stages.get(s);
+            stage.next = s + 1 < stages.size() ? stages.get(s + 1) : null;
+            for (int w = 0; w < stage.workers; w++) {
+                Thread thread = new Thread(() -> runWorker(stage), stage.name + "-" + w);
+                threads.add(thread);
+                thread.start();
+            }
+        }
+    }
+
+    private void runWorker(Stage stage) {
+        try {
+            for (Object item; (item = stage.take()) != END; ) {
+                long start = System.nanoTime();
+                Object result;
+                try {
+                    result = stage.work.apply(item);
+                } catch (RuntimeException e) {
+                    stage.failed.increment();
+                    continue;
+                } finally {
+                    stage.busyNanos.add(System.nanoTime() - start);
+                }
+                stage.processed.increment();
+                if (stage.next != null) stage.next.put(result);
+                else sink.accept(result);
+            }
+            // The last worker out passes the end marker on, one per downstream worker
+            if (stage.alive.decrementAndGet() == 0 && stage.next != null) {
+                for (int i = 0; i < stage.next.workers; i++) stage.next.put(END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Blocks while the first stage's queue is full. */
+    void submit(I item) throws InterruptedException {
+        if (closed) throw new IllegalStateException("pipeline is closed");
+        stages.get(0).put(item);
+    }
+
+    /** Lets every submitted item drain through, then stops the workers; an interrupt is kept for after the wait. */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        boolean interrupted = false;
+        Stage first = stages.get(0);
+        for (int i = 0; i < first.workers; ) {
+            try {
+                first.input.put(END);
+                i++;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        endNanos = System.nanoTime();
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    List<StageStats> stats() {
+        long elapsed = (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos;
+        List<StageStats> result = new ArrayList<>();
+        for (Stage stage : stages) {
+            result.add(new StageStats(stage.name, stage.workers, stage.processed.sum(), stage.failed.sum(),
+                    (double) stage.busyNanos.sum() / ((double) stage.workers * elapsed),
+                    TimeUnit.NANOSECONDS.toMillis(stage.blockedPutNanos.sum()),
+                    TimeUnit.NANOSECONDS.toMillis(stage.starvedNanos.sum()),
+                    stage.input.size(), stage.input.size() + stage.input.remainingCapacity()));
+        }
+        return result;
+    }
+
+    // Same two phases as DataProcessingPipeline, without the barrier
+    public static void main(String[] args) throws InterruptedException {
+        LongAdder done = new LongAdder();
+        StagedPipeline<Integer> pipeline = StagedPipeline.<Integer>builder()
+                .then("phase1", 3, 16, (Integer item) -> {
+                    sleep(50 + (item % 5 == 0 ? 400 : 0)); // every fifth item is slow
+                    return "item-" + item;
+                })
+                .then("phase2", 3, 16, (String item) -> {
+                    sleep(100);
+                    return item.toUpperCase();
+                })
+                .start(result -> {
+                    done.increment();
+                    System.out.println(Thread.currentThread().getName() + " finished " + result);
+                });
+
+        for (int i = 0; i < 30; i++) pipeline.submit(i);
+        pipeline.close();
+        System.out.println("Completed " + done.sum() + " items");
+        pipeline.stats().forEach(System.out::println);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
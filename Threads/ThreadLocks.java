@@ -22,6 +22,9 @@ Now let's say thread2 runs.
     -> thread-2 calls pen.releasePen()
     -> If pen was not available, thread-2 will wait on penAvailable condition.
 
+Taking both locks in one global order avoids the whole dance: MultiLock.acquireAll(pen, paper)
+locks them in the same order whichever way round they are passed.
+
 */
 
 
@@ -31,6 +34,7 @@ import java.util.concurrent.locks.Condition;
 
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 
 class Pen {
     private boolean isAvailable = true;
@@ -178,25 +182,79 @@ Final count: 5
 
 
 
+// optimistic = true: reads go through StampedLock.tryOptimisticRead() - read the field,
+// then validate() the stamp; nothing shared is written, so readers don't bounce a lock
+// word between cores. Only a read that overlapped a write retries under a real read lock.
+// Writers never wait for optimistic readers, so a read-heavy load can't starve them.
+// Any ReadWriteLock can be plugged in for the locked mode, e.g. a ReaderBiasedLock.
 class ReadWriteCounter {
     private int count = 0;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
-    private final Lock readLock = lock.readLock();
-    private final Lock writeLock = lock.writeLock();
+    private final boolean optimistic;
+    private final long writeMillis;
+    private final Lock readLock;
+    private final Lock writeLock;
+    private final StampedLock stampedLock = new StampedLock();
+
+    ReadWriteCounter() {
+        this(false, 50);
+    }
+
+    ReadWriteCounter(boolean optimistic, long writeMillis) {
+        this(new ReentrantReadWriteLock(), optimistic, writeMillis);
+    }
+
+    ReadWriteCounter(ReadWriteLock lock, long writeMillis) {
+        this(lock, false, writeMillis);
+    }
+
+    private ReadWriteCounter(ReadWriteLock lock, boolean optimistic, long writeMillis) {
+        this.readLock = lock.readLock();
+        this.writeLock = lock.writeLock();
+        this.optimistic = optimistic;
+        this.writeMillis = writeMillis;
+    }
 
     public void increment() {
+        if (optimistic) {
+            long stamp = stampedLock.writeLock();
+            try {
+                count++;
+                pause();
+            } finally {
+                stampedLock.unlockWrite(stamp);
+            }
+            return;
+        }
         writeLock.lock();
         try {
             count++;
-            Thread.sleep(50);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
+            pause();
         } finally {
             writeLock.unlock();
         }
     }
 
+    private void pause() {
+        if (writeMillis == 0) return;
+        try {
+            Thread.sleep(writeMillis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public int getCount() {
+        if (optimistic) {
+            long stamp = stampedLock.tryOptimisticRead();
+            int value = count;
+            if (stampedLock.validate(stamp)) return value;
+            stamp = stampedLock.readLock(); // a write got in between
+            try {
+                return count;
+            } finally {
+                stampedLock.unlockRead(stamp);
+            }
+        }
         readLock.lock();
         try {
             return count;
@@ -208,7 +266,8 @@ class ReadWriteCounter {
 
 class ThreadLocks{
     public static void main(String[] args) throws InterruptedException {
-        ReadWriteCounter counter = new ReadWriteCounter();
+        // java ThreadLocks [locked] - optimistic reads by default, "locked" for the plain read lock
+        ReadWriteCounter counter = new ReadWriteCounter(args.length == 0 || !args[0].equals("locked"), 50);
 
         Runnable readTask = new Runnable() {
             @Override
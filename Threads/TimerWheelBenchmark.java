@@ -0,0 +1,176 @@
+/*
+
+TIMEOUT CHURN: HashedWheelScheduler vs ScheduledThreadPoolExecutor vs DelayQueue
+--------------------------------------------------
+
+Models per-request deadlines: PRODUCERS threads each keep a window of pending 30 s
+timeouts. Every operation schedules a new timeout and cancels a random pending one
+(requests finish in any order), so nothing ever fires and WINDOW timeouts are
+pending at all times. TOTAL operations
+(10M by default) are spread over the producers.
+
+* wheel          : HashedWheelScheduler, schedule + cancel are queue offers; the clock
+                   stops once the wheel thread has unlinked everything
+* STPE           : ScheduledThreadPoolExecutor with removeOnCancel (otherwise cancelled
+                   tasks sit in the heap for 30 s), O(log n) under the executor lock
+* DelayQueue     : put + remove(Object); remove is a linear scan of the heap
+
+Each implementation stops early after TIME_BUDGET_SECONDS, so DelayQueue finishes in
+reasonable time; the ops column shows how far it got.
+
+java -Xmx4g TimerWheelBenchmark [total] [window] [producers]
+
+*/
+
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+
+class TimerWheelBenchmark {
+    private static final long TIMEOUT_SECONDS = 30;
+    private static final long TIME_BUDGET_SECONDS = 20;
+    private static final Runnable NOOP = () -> {};
+
+    interface TimerUnderTest {
+        Object schedule() throws InterruptedException;
+
+        void cancel(Object handle);
+
+        void awaitQuiescent() throws InterruptedException; // pending cancels fully applied
+
+        void close() throws InterruptedException;
+    }
+
+    static final class DeadlineEntry implements Delayed {
+        private final long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadlineNanos, ((DeadlineEntry) other).deadlineNanos);
+        }
+    }
+
+    static TimerUnderTest wheel() {
+        HashedWheelScheduler scheduler = new HashedWheelScheduler(1);
+        return new TimerUnderTest() {
+            public Object schedule() {
+                return scheduler.schedule(NOOP, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+
+            public void cancel(Object handle) {
+                ((ScheduledFuture<?>) handle).cancel(false);
+            }
+
+            public void awaitQuiescent() throws InterruptedException {
+                while (scheduler.queuedTaskCount() > 0) Thread.sleep(1);
+            }
+
+            public void close() throws InterruptedException {
+                scheduler.shutdownNow();
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        };
+    }
+
+    static TimerUnderTest stpe() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+        return new TimerUnderTest() {
+            public Object schedule() {
+                return scheduler.schedule(NOOP, TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+
+            public void cancel(Object handle) {
+                ((ScheduledFuture<?>) handle).cancel(false);
+            }
+
+            public void awaitQuiescent() {
+            }
+
+            public void close() throws InterruptedException {
+                scheduler.shutdownNow();
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        };
+    }
+
+    static TimerUnderTest delayQueue() {
+        DelayQueue<DeadlineEntry> queue = new DelayQueue<>();
+        return new TimerUnderTest() {
+            public Object schedule() {
+                DeadlineEntry entry = new DeadlineEntry();
+                queue.put(entry);
+                return entry;
+            }
+
+            public void cancel(Object handle) {
+                queue.remove(handle);
+            }
+
+            public void awaitQuiescent() {
+            }
+
+            public void close() {
+                queue.clear();
+            }
+        };
+    }
+
+    private static void run(String name, TimerUnderTest timer, long total, int window, int producers)
+            throws InterruptedException {
+        long perProducer = total / producers;
+        int perWindow = Math.max(1, window / producers);
+        long budgetEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIME_BUDGET_SECONDS);
+        long[] done = new long[producers];
+        Thread[] threads = new Thread[producers];
+        long start = System.nanoTime();
+        for (int p = 0; p < producers; p++) {
+            int id = p;
+            threads[p] = new Thread(() -> {
+                Object[] pending = new Object[perWindow];
+                SplittableRandom random = new SplittableRandom(id);
+                try {
+                    long i = 0;
+                    for (; i < perProducer; i++) {
+                        int victim = i < perWindow ? (int) i : random.nextInt(perWindow);
+                        if (pending[victim] != null) timer.cancel(pending[victim]);
+                        pending[victim] = timer.schedule();
+                        if ((i & 1023) == 0 && System.nanoTime() > budgetEnd) break;
+                    }
+                    done[id] = i;
+                    for (Object handle : pending) if (handle != null) timer.cancel(handle);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) thread.join();
+        timer.awaitQuiescent();
+        long elapsed = System.nanoTime() - start;
+        timer.close();
+
+        long ops = 0;
+        for (long d : done) ops += d;
+        System.out.printf("%-12s %,12d ops %9.0f ms %,14.0f schedule+cancel/s%s%n", name, ops, elapsed / 1e6,
+                ops * 1e9 / elapsed, ops < perProducer * producers ? "  (time budget hit)" : "");
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long total = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+        int window = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int producers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        System.out.printf("%,d schedule+cancel ops, %,d pending timeouts, %d producers, %d cores%n",
+                total, window, producers, Runtime.getRuntime().availableProcessors());
+
+        run("warm-up", wheel(), Math.min(total, 1_000_000), Math.min(window, 10_000), producers);
+        run("warm-up", stpe(), Math.min(total, 1_000_000), Math.min(window, 10_000), producers);
+        run("wheel", wheel(), total, window, producers);
+        run("STPE", stpe(), total, window, producers);
+        run("DelayQueue", delayQueue(), total, window, producers);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+
+TRANSFER ENGINE BENCHMARK
+--------------------------------------------------
+
+transfers/s between random account pairs, for 1 .. maxThreads threads, with accounts drawn:
+* uniform      : every account equally likely
+* zipf 0.99    : rank r drawn with weight 1 / r^0.99 (a few accounts take most of the traffic)
+* zipf 1.2     : heavier skew still
+Ranks are scattered over the account ids (rank * odd constant, mod accounts), so the hot
+accounts don't sit next to each other.
+
+engines:
+* global lock  : BankAccount's shape - one ReentrantLock over every balance
+* striped      : TransferEngine, STRIPES stripe locks, no journal
+* striped+jrnl : TransferEngine with a Journal writing batches to a temp file (no force)
+
+then single-account debits at maxThreads: global lock vs TransferEngine's CAS fast path.
+
+Account ids are sampled up front (SAMPLES per distribution) so the timed loop only walks an
+array. Every run checks that the total balance didn't change.
+
+javac TransferEngine.java TransferBenchmark.java
+java TransferBenchmark [maxThreads] [accounts (power of two)]
+
+*/
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+class TransferBenchmark {
+    private static final long WARMUP_MILLIS = 300;
+    private static final long MEASURE_MILLIS = 1000;
+    private static final int STRIPES = 4_096;
+    private static final int SAMPLES = 1 << 20;
+    private static final long INITIAL_BALANCE = 1_000_000;
+
+    // what the benchmark drives: a transfer and a debit
+    interface Ledger {
+        boolean transfer(int from, int to, long amount) throws InterruptedException;
+
+        boolean debit(int account, long amount) throws InterruptedException;
+
+        long total();
+    }
+
+    // BankAccount's approach applied to the whole ledger
+    static final class GlobalLockLedger implements Ledger {
+        private final long[] balances;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        GlobalLockLedger(int accounts) {
+            balances = new long[accounts];
+            Arrays.fill(balances, INITIAL_BALANCE);
+        }
+
+        public boolean transfer(int from, int to, long amount) {
+            lock.lock();
+            try {
+                if (balances[from] < amount) return false;
+                balances[from] -= amount;
+                balances[to] += amount;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public boolean debit(int account, long amount) {
+            lock.lock();
+            try {
+                if (balances[account] < amount) return false;
+                balances[account] -= amount;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public long total() {
+            lock.lock();
+            try {
+                return Arrays.stream(balances).sum();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    static Ledger engine(int accounts, TransferEngine.Journal journal) {
+        TransferEngine engine = new TransferEngine(accounts, INITIAL_BALANCE, STRIPES, journal);
+        return new Ledger() {
+            public boolean transfer(int from, int to, long amount) throws InterruptedException {
+                return engine.transfer(from, to, amount);
+            }
+
+            public boolean debit(int account, long amount) throws InterruptedException {
+                return engine.debit(account, amount);
+            }
+
+            public long total() {
+                return engine.total();
+            }
+        };
+    }
+
+    // account ids; exponent 0 = uniform
+    static int[] sample(int accounts, double exponent) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] samples = new int[SAMPLES];
+        if (exponent == 0) {
+            for (int i = 0; i < SAMPLES; i++) samples[i] = random.nextInt(accounts);
+            return samples;
+        }
+        double[] cumulative = new double[accounts];
+        double sum = 0;
+        for (int rank = 0; rank < accounts; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int i = 0; i < SAMPLES; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            if (rank < 0) rank = -rank - 1;
+            samples[i] = (int) ((rank * 0x9E3779B1L) & (accounts - 1));
+        }
+        return samples;
+    }
+
+    // ops/s; debits == true measures single-account debits instead of transfers
+    static double run(Ledger ledger, int[] samples, int threads, long millis, boolean debits)
+            throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        LongAdder debited = new LongAdder();
+        long before = ledger.total();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int i = random.nextInt(SAMPLES);
+                long count = 0;
+                long debitedHere = 0;
+                try {
+                    start.await();
+                    while ((count & 255) != 0 || System.nanoTime() < deadline) {
+                        int from = samples[i];
+                        int to = samples[(i + 1) & (SAMPLES - 1)];
+                        i = (i + 2) & (SAMPLES - 1);
+                        if (debits) {
+                            if (ledger.debit(from, 1)) debitedHere++;
+                        } else if (from != to) {
+                            ledger.transfer(from, to, 1 + (count & 63));
+                        }
+                        count++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    ops.add(count);
+                    debited.add(debitedHere);
+                    done.countDown();
+                }
+            }).start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        long after = ledger.total();
+        if (after != before - debited.sum()) System.out.println("  !! total " + after + ", expected " + (before - debited.sum()));
+        return ops.sum() * 1e9 / elapsed;
+    }
+
+    static double measure(Ledger ledger, int[] samples, int threads, boolean debits) throws InterruptedException {
+        run(ledger, samples, threads, WARMUP_MILLIS, debits);
+        return run(ledger, samples, threads, MEASURE_MILLIS, debits);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 20;
+        if (Integer.bitCount(accounts) != 1) throw new IllegalArgumentException("accounts must be a power of two");
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors() + ", " + accounts + " accounts, "
+                + STRIPES + " stripes, " + MEASURE_MILLIS + " ms per cell");
+        String[] distributions = {"uniform", "zipf 0.99", "zipf 1.2"};
+        double[] exponents = {0, 0.99, 1.2};
+        Path file = Files.createTempFile("transfers", ".journal");
+        try {
+            for (int d = 0; d < distributions.length; d++) {
+                int[] samples = sample(accounts, exponents[d]);
+                System.out.println(distributions[d] + ", transfers/s");
+                System.out.printf("  %-8s %16s %16s %16s%n", "threads", "global lock", "striped", "striped+jrnl");
+                for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                    double global = measure(new GlobalLockLedger(accounts), samples, threads, false);
+                    double striped = measure(engine(accounts, null), samples, threads, false);
+                    TransferEngine.Journal journal = new TransferEngine.Journal(
+                            new TransferEngine.FileSink(file, false), 65_536, 1_024);
+                    double journaled = measure(engine(accounts, journal), samples, threads, false);
+                    journal.close();
+                    System.out.printf("  %-8d %,16.0f %,16.0f %,16.0f%n", threads, global, striped, journaled);
+                }
+                System.out.printf("  debits/s at %d threads: global lock %,.0f, CAS fast path %,.0f%n", maxThreads,
+                        measure(new GlobalLockLedger(accounts), samples, maxThreads, true),
+                        measure(engine(accounts, null), samples, maxThreads, true));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
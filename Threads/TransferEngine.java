@@ -0,0 +1,422 @@
+/*
+
+ACCOUNT-SHARDED TRANSFER ENGINE
+--------------------------------------------------
+
+BankAccount (ReentrantLockBanking) is one int balance behind one ReentrantLock: fine for
+showing lock(), tryLock() and friends, but a ledger of millions of accounts behind one lock
+runs one transfer at a time, and withdrawWithTryLock just drops the work when contended.
+
+TransferEngine keeps every balance in one AtomicLongArray (no object per account) and shards
+the locking:
+
+* striped locks    : account -> stripe (account & (stripes - 1)); a transfer locks the two
+                     stripes lowest index first (one lock when both accounts share a stripe),
+                     so two transfers can never wait on each other in a cycle
+* CAS fast path    : debit() and credit() touch one balance and take no lock - a debit is a
+                     compareAndSet loop that refuses to go below zero. Transfers debit with the
+                     same loop, so both paths can run on the same account at once.
+* batched journal  : every movement is handed to a Journal (bounded queue); one writer thread
+                     drains up to maxBatch entries at a time and writes them with a single
+                     call (FileSink: one FileChannel write, optionally one force, per batch).
+                     Entries are deltas, so replaying them in any order gives the same balances.
+                     A slot is reserved before anything moves - that is where a full queue
+                     blocks and a closed journal refuses - so once money has moved its entry
+                     always goes in, interrupt or not.
+
+Transfer(from, to, amount)
+  ---> journal.reserve() (may block, may throw; nothing has moved yet)
+  ---> lock stripe min(s(from), s(to)) ---> lock stripe max(...)
+        ---> CAS debit from (false if balance < amount) ---> add to `to`
+  ---> unlock both ---> journal.append(from, to, amount), or journal.release() if refused
+
+balances(accounts...) takes the same stripe locks, so it never sees a transfer half done.
+
+*/
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+class TransferEngine {
+    static final int NONE = -1; // `from` of a credit, `to` of a debit
+
+    private final AtomicLongArray balances;
+    private final ReentrantLock[] stripes;
+    private final int stripeMask;
+    private final Journal journal; // null = no journal
+
+    TransferEngine(int accounts, long initialBalance, int stripes, Journal journal) {
+        if (Integer.bitCount(stripes) != 1) throw new IllegalArgumentException("stripes must be a power of two");
+        this.balances = new AtomicLongArray(accounts);
+        for (int i = 0; i < accounts; i++) balances.set(i, initialBalance);
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) this.stripes[i] = new ReentrantLock();
+        this.stripeMask = stripes - 1;
+        this.journal = journal;
+    }
+
+    int accounts() {
+        return balances.length();
+    }
+
+    long balance(int account) {
+        return balances.get(account);
+    }
+
+    // exact only while nothing is moving
+    long total() {
+        long total = 0;
+        for (int i = 0; i < balances.length(); i++) total += balances.get(i);
+        return total;
+    }
+
+    /** Moves amount from one account to the other; false (and nothing moved) if `from` can't cover it. */
+    boolean transfer(int from, int to, long amount) throws InterruptedException {
+        checkAmount(amount);
+        if (from == to) throw new IllegalArgumentException("transfer to the same account: " + from);
+        if (journal != null) journal.reserve();
+        int a = from & stripeMask;
+        int b = to & stripeMask;
+        ReentrantLock first = stripes[Math.min(a, b)];
+        ReentrantLock second = stripes[Math.max(a, b)];
+        boolean moved;
+        first.lock();
+        try {
+            if (a != b) second.lock();
+            try {
+                moved = tryDebit(from, amount);
+                if (moved) balances.getAndAdd(to, amount);
+            } finally {
+                if (a != b) second.unlock();
+            }
+        } finally {
+            first.unlock();
+        }
+        journal(moved, from, to, amount);
+        return moved;
+    }
+
+    /** Lock-free; false if the balance can't cover it. */
+    boolean debit(int account, long amount) throws InterruptedException {
+        checkAmount(amount);
+        if (journal != null) journal.reserve();
+        boolean moved = tryDebit(account, amount);
+        journal(moved, account, NONE, amount);
+        return moved;
+    }
+
+    /** Lock-free. */
+    void credit(int account, long amount) throws InterruptedException {
+        checkAmount(amount);
+        if (journal != null) journal.reserve();
+        balances.getAndAdd(account, amount);
+        journal(true, NONE, account, amount);
+    }
+
+    // after a reserve(): the entry if something moved, the slot back if not
+    private void journal(boolean moved, int from, int to, long amount) {
+        if (journal == null) return;
+        if (moved) journal.append(from, to, amount);
+        else journal.release();
+    }
+
+    /** Balances of the given accounts, with no transfer between them half applied. */
+    long[] balances(int... accounts) {
+        boolean[] needed = new boolean[stripes.length];
+        for (int account : accounts) needed[account & stripeMask] = true;
+        for (int s = 0; s < stripes.length; s++) {
+            if (needed[s]) stripes[s].lock();
+        }
+        try {
+            long[] result = new long[accounts.length];
+            for (int i = 0; i < accounts.length; i++) result[i] = balances.get(accounts[i]);
+            return result;
+        } finally {
+            for (int s = stripes.length - 1; s >= 0; s--) {
+                if (needed[s]) stripes[s].unlock();
+            }
+        }
+    }
+
+    private boolean tryDebit(int account, long amount) {
+        long balance;
+        do {
+            balance = balances.get(account);
+            if (balance < amount) return false;
+        } while (!balances.compareAndSet(account, balance, balance - amount));
+        return true;
+    }
+
+    private static void checkAmount(long amount) {
+        if (amount <= 0) throw new IllegalArgumentException("amount must be positive: " + amount);
+    }
+
+    // ---- journal ----
+
+    record Entry(int from, int to, long amount) {
+    }
+
+    interface Sink extends AutoCloseable {
+        void write(List<Entry> batch) throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    // 16 bytes per entry: from, to, amount
+    static final class FileSink implements Sink {
+        static final int ENTRY_BYTES = 16;
+        private final FileChannel channel;
+        private final boolean force;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * ENTRY_BYTES);
+
+        FileSink(Path path, boolean force) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.force = force;
+        }
+
+        @Override
+        public void write(List<Entry> batch) throws IOException {
+            if (buffer.capacity() < batch.size() * ENTRY_BYTES) buffer = ByteBuffer.allocateDirect(batch.size() * ENTRY_BYTES);
+            buffer.clear();
+            for (Entry entry : batch) buffer.putInt(entry.from()).putInt(entry.to()).putLong(entry.amount());
+            buffer.flip();
+            while (buffer.hasRemaining()) channel.write(buffer);
+            if (force) channel.force(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        static List<Entry> read(Path path) throws IOException {
+            ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+            List<Entry> entries = new ArrayList<>(bytes.remaining() / ENTRY_BYTES);
+            while (bytes.remaining() >= ENTRY_BYTES) entries.add(new Entry(bytes.getInt(), bytes.getInt(), bytes.getLong()));
+            return entries;
+        }
+    }
+
+    // Every queue item holds one of `capacity` slots from reserve() until the writer has taken it,
+    // so append() always finds room and close() knows everything is out once it holds every slot.
+    static final class Journal implements AutoCloseable {
+        private static final long POLL_MILLIS = 50;
+        private final BlockingQueue<Object> queue; // Entry, or a CountDownLatch from flush()
+        private final Semaphore slots;
+        private final int capacity;
+        private final Sink sink;
+        private final int maxBatch;
+        private final Thread writer;
+        private volatile boolean closed;  // no new reservations
+        private volatile boolean stopped; // every reservation is back: the writer may exit
+        private volatile IOException failure;
+        private long batches;  // written by the writer thread only
+        private long entries;
+
+        Journal(Sink sink, int capacity, int maxBatch) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.slots = new Semaphore(capacity);
+            this.capacity = capacity;
+            this.sink = sink;
+            this.maxBatch = maxBatch;
+            this.writer = new Thread(this::drain, "journal-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        /** Takes a slot for one entry; blocks while the writer is behind, throws if closed or the writer died. */
+        void reserve() throws InterruptedException {
+            while (!slots.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) checkOpen();
+            if (closed) {
+                slots.release();
+                checkOpen();
+            }
+        }
+
+        /** Gives back a reserved slot that no entry will use. */
+        void release() {
+            slots.release();
+        }
+
+        /** Never blocks and never throws: the slot was reserved. */
+        void append(int from, int to, long amount) {
+            queue.add(new Entry(from, to, amount));
+        }
+
+        /** Waits until everything appended before this call has been written. */
+        void flush() throws InterruptedException {
+            checkOpen();
+            reserve();
+            CountDownLatch written = new CountDownLatch(1);
+            queue.add(written);
+            while (!written.await(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (!writer.isAlive() && written.getCount() != 0) throw new IllegalStateException("journal writer died");
+            }
+            if (failure != null) throw new UncheckedIOException(failure);
+        }
+
+        private void checkOpen() {
+            if (closed) throw new IllegalStateException("journal closed");
+            if (!writer.isAlive()) throw new IllegalStateException("journal writer died");
+        }
+
+        // batches and entries written so far; call after flush() or close()
+        long batches() {
+            return batches;
+        }
+
+        long entries() {
+            return entries;
+        }
+
+        private void drain() {
+            List<Object> taken = new ArrayList<>(maxBatch);
+            List<Entry> batch = new ArrayList<>(maxBatch);
+            List<CountDownLatch> flushes = new ArrayList<>();
+            try {
+                while (!stopped || !queue.isEmpty()) {
+                    Object first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    taken.add(first);
+                    queue.drainTo(taken, maxBatch - 1);
+                    for (Object item : taken) {
+                        if (item instanceof Entry entry) batch.add(entry);
+                        else flushes.add((CountDownLatch) item);
+                    }
+                    if (!batch.isEmpty() && failure == null) {
+                        try {
+                            sink.write(batch);
+                            batches++;
+                            entries += batch.size();
+                        } catch (IOException e) {
+                            failure = e; // keep draining so appenders never block on a dead writer
+                        }
+                    }
+                    flushes.forEach(CountDownLatch::countDown); // only after the entries before them are out
+                    slots.release(taken.size());
+                    taken.clear();
+                    batch.clear();
+                    flushes.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /** Writes everything reserved before it, then closes the sink; an interrupt is kept for after the wait. */
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            boolean interrupted = false;
+            while (writer.isAlive() && !stopped) {
+                try {
+                    stopped = slots.tryAcquire(capacity, POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            stopped = true;
+            while (writer.isAlive()) {
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            sink.close();
+            if (failure != null) throw failure;
+        }
+    }
+
+    // Random transfers, debits and credits from 4 threads; then the totals and a replay of the journal must agree
+    public static void main(String[] args) throws Exception {
+        int accounts = 10_000;
+        long initial = 1_000;
+        Path file = Files.createTempFile("transfers", ".journal");
+        Journal journal = new Journal(new FileSink(file, false), 65_536, 1_024);
+        TransferEngine engine = new TransferEngine(accounts, initial, 1_024, journal);
+        long[] net = new long[4]; // credits - debits per thread
+        int[] refused = new int[4];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    for (int i = 0; i < 200_000; i++) {
+                        int account = random.nextInt(accounts);
+                        long amount = 1 + random.nextInt(500);
+                        int op = random.nextInt(10);
+                        if (op == 0) {
+                            if (engine.debit(account, amount)) net[id] -= amount;
+                            else refused[id]++;
+                        } else if (op == 1) {
+                            engine.credit(account, amount);
+                            net[id] += amount;
+                        } else {
+                            int to = random.nextInt(accounts - 1);
+                            if (!engine.transfer(account, to >= account ? to + 1 : to, amount)) refused[id]++;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        journal.close();
+
+        long expected = accounts * initial + net[0] + net[1] + net[2] + net[3];
+        System.out.println("total " + engine.total() + ", expected " + expected + ", refused "
+                + (refused[0] + refused[1] + refused[2] + refused[3]));
+
+        long[] replayed = new long[accounts];
+        Arrays.fill(replayed, initial);
+        List<Entry> entries = FileSink.read(file);
+        for (Entry entry : entries) {
+            if (entry.from() != NONE) replayed[entry.from()] -= entry.amount();
+            if (entry.to() != NONE) replayed[entry.to()] += entry.amount();
+        }
+        int mismatches = 0;
+        for (int i = 0; i < accounts; i++) {
+            if (replayed[i] != engine.balance(i)) mismatches++;
+        }
+        System.out.println("journal: " + entries.size() + " entries in " + journal.batches() + " batches, "
+                + mismatches + " accounts differ after replay");
+
+        // A closed journal refuses up front: nothing moves, and flush() fails instead of waiting forever
+        long before = engine.balance(0);
+        try {
+            engine.credit(0, 1);
+        } catch (IllegalStateException e) {
+            System.out.println("credit after close: " + e.getMessage() + ", balance unchanged: " + (engine.balance(0) == before));
+        }
+        try {
+            journal.flush();
+        } catch (IllegalStateException e) {
+            System.out.println("flush after close: " + e.getMessage());
+        }
+        Files.delete(file);
+    }
+}